@@ -0,0 +1,66 @@
+package boomfield.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Board generation: planting the booms and counting every cell's
+ * neighbors. {@code plantBooms} includes allocating the empty board, the
+ * same as a real new game does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class BoardGenerationBenchmark {
+
+    @Param({"15", "250", "1000", "4000"})
+    int size;
+
+    @Param({"0.10", "0.25", "0.40"})
+    double density;
+
+    private int booms;
+    private Object plantedBoard;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        booms = (int) (size * (long) size * density);
+        plantedBoard = GameBridge.newPackedBoard(size, size);
+        GameBridge.plantBooms(plantedBoard, booms, new Random(42));
+    }
+
+    @Benchmark
+    public Object plantBooms() {
+        Object board = GameBridge.newPackedBoard(size, size);
+        GameBridge.plantBooms(board, booms, new Random(seed++));
+        return board;
+    }
+
+    @Benchmark
+    public Object countNearbyBooms() {
+        // counting only reads booms and overwrites counts, so it is repeatable
+        GameBridge.countNearbyBooms(plantedBoard);
+        return plantedBoard;
+    }
+
+    @Benchmark
+    public Object newGame() {
+        return GameBridge.newGame(size, size, booms, seed++);
+    }
+}
@@ -0,0 +1,266 @@
+package boomfield.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import javax.swing.JComponent;
+
+/**
+ * Access to the game classes for the benchmarks.
+ *
+ * <p>The game lives in the unnamed (default) package, which Java code in a
+ * named package cannot import, and JMH refuses to generate benchmarks in the
+ * default package. The handles below are resolved once and kept in static
+ * final fields, so the JIT inlines them like direct calls. Private
+ * hot-path methods such as {@code checkWinCondition} are reached the same
+ * way, without widening their visibility in the game.</p>
+ */
+final class GameBridge {
+
+    private static final MethodHandle NEW_PACKED_BOARD;
+    private static final MethodHandle PLANT_BOOMS;
+    private static final MethodHandle COUNT_NEARBY_BOOMS;
+    private static final MethodHandle NEW_LISTENER;
+    private static final MethodHandle HEADLESS;
+    private static final MethodHandle UNCOVER;
+    private static final MethodHandle TOGGLE_FLAG;
+    private static final MethodHandle CHECK_WIN;
+    private static final MethodHandle BOARD_OF;
+    private static final MethodHandle HAS_BOOM;
+    private static final MethodHandle NEIGHBORING_BOOMS;
+    private static final MethodHandle NEW_BOARD_PANEL;
+    private static final MethodHandle CELL_AT;
+    private static final MethodHandle NEW_DELTA;
+    private static final MethodHandle DELTA_ADD;
+    private static final MethodHandle APPLY_DELTA;
+    private static final MethodHandle ASSET_LOADER;
+    private static final MethodHandle LOAD_IMAGE;
+    private static final String[] TILE_ICONS;
+
+    static {
+        try {
+            Class<?> storage = Class.forName("BoardStorage");
+            Class<?> packed = Class.forName("PackedBoard");
+            Class<?> logic = Class.forName("BoomFieldLogic");
+            Class<?> listener = Class.forName("LogicToGUI");
+            Class<?> counting = Class.forName("CountingListener");
+            Class<?> guiToLogic = Class.forName("GUIToLogic");
+            Class<?> panel = Class.forName("BoardPanel");
+            Class<?> delta = Class.forName("BoardDelta");
+            Class<?> assets = Class.forName("AssetLoader");
+
+            MethodHandles.Lookup pub = MethodHandles.publicLookup();
+            MethodHandles.Lookup logicLookup =
+                    MethodHandles.privateLookupIn(logic, MethodHandles.lookup());
+            MethodHandles.Lookup panelLookup =
+                    MethodHandles.privateLookupIn(panel, MethodHandles.lookup());
+
+            NEW_PACKED_BOARD = pub.findConstructor(packed,
+                            MethodType.methodType(void.class, int.class, int.class))
+                    .asType(MethodType.methodType(Object.class, int.class, int.class));
+            PLANT_BOOMS = logicLookup.findStatic(logic, "plantBooms",
+                            MethodType.methodType(void.class, storage, int.class, Random.class))
+                    .asType(MethodType.methodType(void.class, Object.class, int.class, Random.class));
+            COUNT_NEARBY_BOOMS = logicLookup.findStatic(logic, "countNearbyBooms",
+                            MethodType.methodType(void.class, storage))
+                    .asType(MethodType.methodType(void.class, Object.class));
+            NEW_LISTENER = pub.findConstructor(counting,
+                            MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            HEADLESS = pub.findStatic(logic, "headless",
+                            MethodType.methodType(logic, int.class, int.class, int.class,
+                                    long.class, listener))
+                    .asType(MethodType.methodType(Object.class, int.class, int.class,
+                            int.class, long.class, Object.class));
+            UNCOVER = pub.findVirtual(guiToLogic, "uncoverSelectedCell",
+                            MethodType.methodType(void.class, int.class, int.class))
+                    .asType(MethodType.methodType(void.class, Object.class, int.class, int.class));
+            TOGGLE_FLAG = pub.findVirtual(guiToLogic, "toggleFlag",
+                            MethodType.methodType(void.class, int.class, int.class))
+                    .asType(MethodType.methodType(void.class, Object.class, int.class, int.class));
+            CHECK_WIN = logicLookup.findVirtual(logic, "checkWinCondition",
+                            MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+            BOARD_OF = logicLookup.findGetter(logic, "BOARD", storage)
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            HAS_BOOM = pub.findVirtual(storage, "hasBoom",
+                            MethodType.methodType(boolean.class, int.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class, int.class));
+            NEIGHBORING_BOOMS = pub.findVirtual(storage, "getNeighboringBooms",
+                            MethodType.methodType(int.class, int.class))
+                    .asType(MethodType.methodType(int.class, Object.class, int.class));
+            NEW_BOARD_PANEL = pub.findConstructor(panel,
+                            MethodType.methodType(void.class, int.class, int.class))
+                    .asType(MethodType.methodType(JComponent.class, int.class, int.class));
+            CELL_AT = panelLookup.findVirtual(panel, "cellAt",
+                            MethodType.methodType(int.class, int.class, int.class))
+                    .asType(MethodType.methodType(int.class, JComponent.class, int.class, int.class));
+            NEW_DELTA = pub.findConstructor(delta,
+                            MethodType.methodType(void.class, int.class, int.class))
+                    .asType(MethodType.methodType(Object.class, int.class, int.class));
+            DELTA_ADD = pub.findVirtual(delta, "add",
+                            MethodType.methodType(void.class, int.class, int.class))
+                    .asType(MethodType.methodType(void.class, Object.class, int.class, int.class));
+            APPLY_DELTA = pub.findVirtual(panel, "applyDelta",
+                            MethodType.methodType(void.class, delta))
+                    .asType(MethodType.methodType(void.class, JComponent.class, Object.class));
+            ASSET_LOADER = pub.findStatic(assets, "get",
+                            MethodType.methodType(assets))
+                    .asType(MethodType.methodType(Object.class));
+            LOAD_IMAGE = pub.findVirtual(assets, "image",
+                            MethodType.methodType(CompletableFuture.class, String.class))
+                    .asType(MethodType.methodType(CompletableFuture.class, Object.class,
+                            String.class));
+            TILE_ICONS = new String[] {
+                    (String) assets.getField("ICON_HIDDEN").get(null),
+                    (String) assets.getField("ICON_FLAGGED").get(null),
+                    (String) assets.getField("ICON_MINE").get(null),
+                    (String) assets.getField("ICON_UNCOVERED").get(null)
+            };
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private GameBridge() {
+    }
+
+    static Object newPackedBoard(int rows, int cols) {
+        try {
+            return (Object) NEW_PACKED_BOARD.invokeExact(rows, cols);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void plantBooms(Object board, int booms, Random random) {
+        try {
+            PLANT_BOOMS.invokeExact(board, booms, random);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void countNearbyBooms(Object board) {
+        try {
+            COUNT_NEARBY_BOOMS.invokeExact(board);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /** Headless game with a fresh CountingListener. */
+    static Object newGame(int rows, int cols, int booms, long seed) {
+        try {
+            Object listener = (Object) NEW_LISTENER.invokeExact();
+            return (Object) HEADLESS.invokeExact(rows, cols, booms, seed, listener);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void uncover(Object game, int row, int col) {
+        try {
+            UNCOVER.invokeExact(game, row, col);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void toggleFlag(Object game, int row, int col) {
+        try {
+            TOGGLE_FLAG.invokeExact(game, row, col);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void checkWinCondition(Object game) {
+        try {
+            CHECK_WIN.invokeExact(game);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Finds the first cell of a game that would start a cascade (no boom
+     * and no neighboring booms).
+     * @return flat cell index, or -1 if the board has no such cell
+     */
+    static int firstOpenCell(Object game, int size) {
+        try {
+            Object board = (Object) BOARD_OF.invokeExact(game);
+            for (int index = 0; index < size; index++) {
+                boolean boom = (boolean) HAS_BOOM.invokeExact(board, index);
+                if (!boom && (int) NEIGHBORING_BOOMS.invokeExact(board, index) == 0) {
+                    return index;
+                }
+            }
+            return -1;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Builds a board panel with its tile icons in place. The icons decode
+     * in the background, so this waits for them first; otherwise the panel
+     * would paint placeholders and swap the icons in mid-measurement.
+     */
+    static JComponent newBoardPanel(int rows, int cols) {
+        try {
+            Object loader = ASSET_LOADER.invokeExact();
+            for (String icon : TILE_ICONS) {
+                ((CompletableFuture<?>) LOAD_IMAGE.invokeExact(loader, icon)).join();
+            }
+            return (JComponent) NEW_BOARD_PANEL.invokeExact(rows, cols);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static int cellAt(JComponent panel, int x, int y) {
+        try {
+            return (int) CELL_AT.invokeExact(panel, x, y);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Gives every cell of a board panel a state, cycling through the
+     * hidden, flagged, mine and numbered looks so paints are representative.
+     */
+    static void fillPanelStates(JComponent panel, int rows, int cols) {
+        try {
+            int size = rows * cols;
+            Object delta = (Object) NEW_DELTA.invokeExact(cols, size);
+            for (int i = 0; i < size; i++) {
+                int state;
+                switch (i % 5) {
+                    case 0: state = 0x04; break;             // hidden
+                    case 1: state = 0x06; break;             // flagged
+                    case 2: state = 0x01; break;             // mine
+                    default: state = (i % 7) << 4; break;    // numbers 0-6
+                }
+                DELTA_ADD.invokeExact(delta, i, state);
+            }
+            APPLY_DELTA.invokeExact(panel, delta);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,57 @@
+package boomfield.bench;
+
+import java.awt.Dimension;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JComponent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mapping a mouse point to a cell in {@code BoardPanel}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class HitTestBenchmark {
+
+    private static final int POINTS = 1024;
+
+    @Param({"15", "250", "1000", "4000"})
+    int size;
+
+    private JComponent panel;
+    private final int[] xs = new int[POINTS];
+    private final int[] ys = new int[POINTS];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        panel = GameBridge.newBoardPanel(size, size);
+        Dimension dim = panel.getPreferredSize();
+        Random random = new Random(3);
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = random.nextInt(dim.width);
+            ys[i] = random.nextInt(dim.height);
+        }
+    }
+
+    @Benchmark
+    public int cellAt() {
+        int i = next++ & (POINTS - 1);
+        return GameBridge.cellAt(panel, xs[i], ys[i]);
+    }
+}
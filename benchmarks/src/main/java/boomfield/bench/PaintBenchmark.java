@@ -0,0 +1,80 @@
+package boomfield.bench;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JComponent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Offscreen painting of {@code BoardPanel} into a window-sized
+ * {@code BufferedImage}. {@code viewport} paints the window-sized area in
+ * the middle of the board (what a scrolled window repaints), {@code
+ * singleCell} paints a one-cell dirty rectangle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class PaintBenchmark {
+
+    private static final int WIDTH = 960;
+    private static final int HEIGHT = 650;
+
+    @Param({"15", "250", "1000", "4000"})
+    int size;
+
+    private JComponent panel;
+    private BufferedImage image;
+    private Graphics2D g;
+    private int originX;
+    private int originY;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        panel = GameBridge.newBoardPanel(size, size);
+        GameBridge.fillPanelStates(panel, size, size);
+        Dimension dim = panel.getPreferredSize();
+        panel.setSize(dim);
+
+        originX = Math.max(0, (dim.width - WIDTH) / 2);
+        originY = Math.max(0, (dim.height - HEIGHT) / 2);
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB_PRE);
+        g = image.createGraphics();
+        g.translate(-originX, -originY);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage viewport() {
+        g.setClip(originX, originY, WIDTH, HEIGHT);
+        panel.paint(g);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage singleCell() {
+        g.setClip(originX + WIDTH / 2, originY + HEIGHT / 2, 40, 46);
+        panel.paint(g);
+        return image;
+    }
+}
@@ -0,0 +1,69 @@
+package boomfield.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A cascading {@code uncoverSelectedCell} on a fresh board. A move can only
+ * be made once per board, so the same seeded board is built again before
+ * every op in an invocation-level setup, which JMH leaves out of both the
+ * time and gc.alloc.rate.norm; the numbers are the click alone. On the
+ * 15x15 board a cascade is only a few microseconds, so expect some timer
+ * noise there.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class UncoverBenchmark {
+
+    private static final long SEED = 20240501L;
+
+    @Param({"15", "250", "1000", "4000"})
+    int size;
+
+    @Param({"0.10", "0.25", "0.40"})
+    double density;
+
+    private int booms;
+    private int openRow;
+    private int openCol;
+    private Object game;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        booms = (int) (size * (long) size * density);
+        Object first = GameBridge.newGame(size, size, booms, SEED);
+        int open = GameBridge.firstOpenCell(first, size * size);
+        if (open < 0) {
+            // no zero cell on very dense boards; any click is still a move
+            open = 0;
+        }
+        openRow = open / size;
+        openCol = open % size;
+    }
+
+    @Setup(Level.Invocation)
+    public void newGame() {
+        game = GameBridge.newGame(size, size, booms, SEED);
+    }
+
+    @Benchmark
+    public Object cascade() {
+        GameBridge.uncover(game, openRow, openCol);
+        return game;
+    }
+}
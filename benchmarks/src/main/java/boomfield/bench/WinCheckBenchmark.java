@@ -0,0 +1,57 @@
+package boomfield.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code checkWinCondition} on a game in progress, plus a flag/unflag pair,
+ * which is the cheapest complete move and runs the win check twice.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class WinCheckBenchmark {
+
+    @Param({"15", "250", "1000", "4000"})
+    int size;
+
+    @Param({"0.10", "0.25", "0.40"})
+    double density;
+
+    private Object game;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int booms = (int) (size * (long) size * density);
+        game = GameBridge.newGame(size, size, booms, 7L);
+        int open = GameBridge.firstOpenCell(game, size * size);
+        if (open >= 0) {
+            GameBridge.uncover(game, open / size, open % size);
+        }
+    }
+
+    @Benchmark
+    public void checkWinCondition() {
+        GameBridge.checkWinCondition(game);
+    }
+
+    @Benchmark
+    public void toggleFlagTwice() {
+        GameBridge.toggleFlag(game, size - 1, size - 1);
+        GameBridge.toggleFlag(game, size - 1, size - 1);
+    }
+}
@@ -0,0 +1,52 @@
+import org.junit.jupiter.api.Test;
+
+import java.awt.Dimension;
+import java.awt.Polygon;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * Checks BoardPanel.cellAt against the plain scan it replaced, which tests
+ * the point against every cell's polygon in row-major order.
+ */
+class BoardPanelHitTest {
+
+    @Test
+    void cellAtMatchesPolygonScanOnEveryPixel() {
+        checkEveryPixel(7, 9);
+    }
+
+    @Test
+    void cellAtMatchesPolygonScanOnSingleRowAndColumn() {
+        checkEveryPixel(1, 5);
+        checkEveryPixel(5, 1);
+    }
+
+    private static void checkEveryPixel(int rows, int cols) {
+        BoardPanel panel = new BoardPanel(rows, cols);
+        Dimension size = panel.getPreferredSize();
+
+        // a few pixels past every edge as well, where nothing should be hit
+        for (int y = -3; y < size.height + 3; y++) {
+            for (int x = -3; x < size.width + 3; x++) {
+                assertEquals(scan(panel, rows, cols, x, y), panel.cellAt(x, y),
+                        "pixel (" + x + ", " + y + ") on a " + rows + "x"
+                                + cols + " board");
+            }
+        }
+    }
+
+    private static int scan(BoardPanel panel, int rows, int cols,
+                            int x, int y) {
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                Polygon p = panel.cellShape(r, c);
+                if (p != null && p.contains(x, y)) {
+                    return r * cols + c;
+                }
+            }
+        }
+        return -1;
+    }
+}
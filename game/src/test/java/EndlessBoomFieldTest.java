@@ -0,0 +1,107 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Checks that evicting chunks from an endless field never changes the
+ * game: a field that keeps only a few chunks in memory is played side by
+ * side with one that never evicts, and both must end up with the same
+ * cells and counters.
+ */
+class EndlessBoomFieldTest {
+
+    @Test
+    void evictedChunksKeepTheirProgress() {
+        EndlessBoomField small = new EndlessBoomField(77, 0.17, 4,
+                new CountingListener());
+        EndlessBoomField reference = new EndlessBoomField(77, 0.17,
+                Integer.MAX_VALUE, new CountingListener());
+        int reach = 300;
+
+        Random random = new Random(5);
+        for (int m = 0; m < 10_000; m++) {
+            int row = random.nextInt(2 * reach) - reach;
+            int col = random.nextInt(2 * reach) - reach;
+            int state = look(small, reference, row, col);
+            if ((state & BoardStorage.HIDDEN) == 0) {
+                continue;
+            }
+            boolean boom = (state & BoardStorage.BOOM) != 0;
+            boolean flagged = (state & BoardStorage.FLAGGED) != 0;
+            if (boom || flagged || random.nextInt(10) == 0) {
+                small.toggleFlag(row, col);
+                reference.toggleFlag(row, col);
+            } else {
+                small.uncoverSelectedCell(row, col);
+                reference.uncoverSelectedCell(row, col);
+            }
+            assertTrue(small.getLiveChunks() <= 4,
+                    small.getLiveChunks() + " live chunks");
+            assertFalse(small.isGameOver());
+        }
+        assertTrue(small.getParkedChunks() > 0);
+
+        assertEquals(reference.getCellsRevealed(), small.getCellsRevealed());
+        assertEquals(reference.getFlagsUsed(), small.getFlagsUsed());
+        assertSameCells(small, reference, -reach - 64, reach + 64);
+    }
+
+    @Test
+    void resolvedChunksComeBackResolved() {
+        EndlessBoomField small = new EndlessBoomField(91, 0.15, 2,
+                new CountingListener());
+        EndlessBoomField reference = new EndlessBoomField(91, 0.15,
+                Integer.MAX_VALUE, new CountingListener());
+
+        // uncover every safe cell of the chunk at (640, 640)
+        int base = 10 * EndlessBoomField.CHUNK_SIZE;
+        for (int row = base; row < base + EndlessBoomField.CHUNK_SIZE; row++) {
+            for (int col = base; col < base + EndlessBoomField.CHUNK_SIZE;
+                 col++) {
+                int state = look(small, reference, row, col);
+                if (state == BoardStorage.HIDDEN) {
+                    small.uncoverSelectedCell(row, col);
+                    reference.uncoverSelectedCell(row, col);
+                }
+            }
+        }
+        // and look far away until it is evicted
+        for (int i = 1; i <= 6; i++) {
+            look(small, reference, -1000 * i, -1000 * i);
+        }
+        assertTrue(small.getResolvedChunks() > 0);
+
+        assertEquals(reference.getCellsRevealed(), small.getCellsRevealed());
+        assertSameCells(small, reference, base - 64, base + 128);
+        assertFalse(small.isGameOver());
+    }
+
+    /**
+     * Points both fields' window at a cell, which loads its chunk, and
+     * returns the cell's state.
+     */
+    private static int look(EndlessBoomField small, EndlessBoomField reference,
+                            int row, int col) {
+        int even = row & ~1;
+        small.touchViewport(even, col, even + 1, col);
+        reference.touchViewport(even, col, even + 1, col);
+        return reference.stateAt(row, col);
+    }
+
+    private static void assertSameCells(EndlessBoomField small,
+                                        EndlessBoomField reference,
+                                        int from, int to) {
+        for (int row = from; row < to; row++) {
+            for (int col = from; col < to; col++) {
+                assertEquals(reference.stateAt(row, col),
+                        small.stateAt(row, col),
+                        "cell (" + row + ", " + col + ")");
+            }
+        }
+    }
+}
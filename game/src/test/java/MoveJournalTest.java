@@ -0,0 +1,203 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Checks undo and replay against the game itself. A game's state is taken
+ * as its save file, which holds every cell's packed state along with the
+ * flag and win counters and the game over flags, so two games with the
+ * same save file are in exactly the same state.
+ */
+class MoveJournalTest {
+
+    private static final int ROWS = 12;
+    private static final int COLS = 12;
+    private static final int BOOMS = 10;
+
+    @Test
+    void replayMatchesTheGameAfterEveryEvent() throws IOException {
+        for (long seed = 1; seed <= 5; seed++) {
+            BoomFieldLogic game = newGame(seed);
+            MoveJournal journal = game.enableJournal();
+            List<byte[]> afterEvent = new ArrayList<>();
+            afterEvent.add(stateOf(game));
+
+            Random moves = new Random(seed);
+            for (int m = 0; m < 150; m++) {
+                if (m % 10 == 9) {
+                    game.undo();
+                } else {
+                    play(game, moves);
+                }
+                while (afterEvent.size() <= journal.eventCount()) {
+                    afterEvent.add(stateOf(game));
+                }
+            }
+
+            for (int e = 0; e <= journal.eventCount(); e++) {
+                BoomFieldLogic replayed = BoomFieldLogic.replay(journal, e,
+                        new CountingListener());
+                assertArrayEquals(afterEvent.get(e), stateOf(replayed),
+                        "seed " + seed + ", replay of " + e + " events");
+            }
+        }
+    }
+
+    @Test
+    void replayOfALoadedGameLeavesTheSaveFileAlone() throws IOException {
+        Path file = Files.createTempFile("boomfield-test", ".bin");
+        try {
+            BoomFieldLogic saved = newGame(4);
+            saved.uncoverSelectedCell(ROWS / 2, COLS / 2);
+            saved.save(file);
+            byte[] onDisk = Files.readAllBytes(file);
+
+            BoomFieldLogic game = BoomFieldLogic.load(file, new CountingListener());
+            MoveJournal journal = game.enableJournal();
+            List<byte[]> afterEvent = new ArrayList<>();
+            afterEvent.add(stateOf(game));
+            assertArrayEquals(onDisk, afterEvent.get(0));
+
+            Random moves = new Random(4);
+            for (int m = 0; m < 150; m++) {
+                if (m % 7 == 6) {
+                    game.undo();
+                } else {
+                    play(game, moves);
+                }
+                while (afterEvent.size() <= journal.eventCount()) {
+                    afterEvent.add(stateOf(game));
+                }
+            }
+
+            for (int e = 0; e <= journal.eventCount(); e++) {
+                BoomFieldLogic replayed = BoomFieldLogic.replay(journal, e,
+                        new CountingListener());
+                assertArrayEquals(afterEvent.get(e), stateOf(replayed),
+                        "replay of " + e + " events");
+            }
+            assertArrayEquals(onDisk, Files.readAllBytes(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void replayMatchesFreshPlayOfTheSameMoves() throws IOException {
+        BoomFieldLogic journaled = newGame(9);
+        MoveJournal journal = journaled.enableJournal();
+        BoomFieldLogic fresh = newGame(9);
+
+        Random moves = new Random(9);
+        for (int m = 0; m < 60; m++) {
+            int op = moves.nextInt(3);
+            int row = moves.nextInt(ROWS);
+            int col = moves.nextInt(COLS);
+            apply(journaled, op, row, col);
+            apply(fresh, op, row, col);
+
+            BoomFieldLogic replayed = BoomFieldLogic.replay(journal,
+                    journal.eventCount(), new CountingListener());
+            assertArrayEquals(stateOf(fresh), stateOf(replayed),
+                    "after move " + m);
+        }
+    }
+
+    @Test
+    void undoRestoresTheExactStateBeforeEachMove() throws IOException {
+        for (long seed = 1; seed <= 5; seed++) {
+            BoomFieldLogic game = newGame(seed);
+            game.enableJournal();
+            List<byte[]> beforeMove = new ArrayList<>();
+            List<Integer> flagsBefore = new ArrayList<>();
+            List<Integer> revealedBefore = new ArrayList<>();
+
+            Random moves = new Random(seed);
+            for (int m = 0; m < 80; m++) {
+                byte[] before = stateOf(game);
+                int flags = game.getFlagsUsed();
+                int revealed = game.getCellsRevealed();
+                int depth = game.getJournal().undoDepth();
+                play(game, moves);
+                if (game.getJournal().undoDepth() > depth) {
+                    beforeMove.add(before);
+                    flagsBefore.add(flags);
+                    revealedBefore.add(revealed);
+                }
+            }
+            assertFalse(beforeMove.isEmpty());
+
+            for (int m = beforeMove.size() - 1; m >= 0; m--) {
+                assertTrue(game.undo(), "seed " + seed + ", undo " + m);
+                assertArrayEquals(beforeMove.get(m), stateOf(game),
+                        "seed " + seed + ", state before move " + m);
+                assertEquals((int) flagsBefore.get(m), game.getFlagsUsed());
+                assertEquals((int) revealedBefore.get(m),
+                        game.getCellsRevealed());
+            }
+            assertFalse(game.undo(), "seed " + seed + ", nothing left");
+            assertFalse(game.isGameOver());
+        }
+    }
+
+    @Test
+    void undoTakesBackALosingMove() throws IOException {
+        BoomFieldLogic game = newGame(3);
+        game.enableJournal();
+        byte[] before = stateOf(game);
+
+        // uncovering every cell is bound to hit a boom
+        for (int i = 0; i < ROWS * COLS && !game.isGameOver(); i++) {
+            before = stateOf(game);
+            game.uncoverSelectedCell(i / COLS, i % COLS);
+        }
+        assertTrue(game.isGameOver());
+        assertFalse(game.isWon());
+
+        assertTrue(game.undo());
+        assertFalse(game.isGameOver());
+        assertArrayEquals(before, stateOf(game));
+    }
+
+    private static BoomFieldLogic newGame(long seed) {
+        return BoomFieldLogic.headless(ROWS, COLS, BOOMS, seed,
+                new CountingListener());
+    }
+
+    // an uncover, flag or chord on a random cell
+    private static void play(BoomFieldLogic game, Random moves) {
+        apply(game, moves.nextInt(3), moves.nextInt(ROWS),
+                moves.nextInt(COLS));
+    }
+
+    private static void apply(BoomFieldLogic game, int op, int row, int col) {
+        if (op == 0) {
+            game.uncoverSelectedCell(row, col);
+        } else if (op == 1) {
+            game.toggleFlag(row, col);
+        } else {
+            game.chord(row, col);
+        }
+    }
+
+    private static byte[] stateOf(BoomFieldLogic game) throws IOException {
+        Path file = Files.createTempFile("boomfield-test", ".bin");
+        try {
+            game.save(file);
+            return Files.readAllBytes(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Checks the parallel board generation: a seed gives the same board however
+ * many threads run it, the booms add up, the neighbor counts match a serial
+ * count, and the bands get their booms from a proper hypergeometric split.
+ */
+class ParallelBoardGeneratorTest {
+
+    // 1000 rows is 7 full bands and a short last one
+    private static final int ROWS = 1000;
+    private static final int COLS = 1100;
+    private static final int BOOMS = ROWS * COLS / 5;
+    private static final long SEED = 20240611L;
+
+    @Test
+    void sameSeedGivesSameBoardOnEveryPoolSize() throws Exception {
+        assertTrue(ROWS * COLS >= ParallelBoardGenerator.PARALLEL_THRESHOLD);
+        byte[] expected = generateOn(1);
+        assertArrayEquals(expected, generateOn(2), "2 threads");
+        assertArrayEquals(expected, generateOn(7), "7 threads");
+        assertArrayEquals(expected, states(generate()), "common pool");
+    }
+
+    @Test
+    void plantsExactlyTheBoomsAskedFor() {
+        BoardStorage board = generate();
+        int booms = 0;
+        for (int i = 0; i < board.size(); i++) {
+            if (board.hasBoom(i)) {
+                booms++;
+            }
+        }
+        assertEquals(BOOMS, booms);
+    }
+
+    @Test
+    void neighborCountsMatchSerialCount() {
+        BoardStorage parallel = generate();
+
+        BoardStorage serial = new PackedBoard(ROWS, COLS);
+        for (int i = 0; i < parallel.size(); i++) {
+            if (parallel.hasBoom(i)) {
+                serial.setBoom(i, true);
+            }
+        }
+        BoomFieldLogic.countNearbyBooms(serial);
+
+        assertArrayEquals(states(serial), states(parallel));
+    }
+
+    @Test
+    void bandQuotasAddUpAndFitTheirBands() {
+        int bands = (ROWS + ParallelBoardGenerator.BAND_ROWS - 1)
+                / ParallelBoardGenerator.BAND_ROWS;
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int booms : new int[] { 0, 1, BOOMS, ROWS * COLS - 1,
+                ROWS * COLS }) {
+            int[] quotas = ParallelBoardGenerator.bandQuotas(ROWS, COLS,
+                    bands, booms, random);
+            int total = 0;
+            for (int b = 0; b < bands; b++) {
+                int bandRows = Math.min(ParallelBoardGenerator.BAND_ROWS,
+                        ROWS - b * ParallelBoardGenerator.BAND_ROWS);
+                assertTrue(quotas[b] >= 0 && quotas[b] <= bandRows * COLS,
+                        "band " + b + " got " + quotas[b] + " booms");
+                total += quotas[b];
+            }
+            assertEquals(booms, total, booms + " booms");
+        }
+    }
+
+    @Test
+    void hypergeometricHasTheRightMeanAndVariance() {
+        long cells = 1_000_000;
+        long booms = 200_000;
+        long drawn = 128_000;
+        int trials = 20_000;
+        SplittableRandom random = new SplittableRandom(SEED);
+
+        double sum = 0;
+        double sumSquares = 0;
+        for (int t = 0; t < trials; t++) {
+            int k = ParallelBoardGenerator.hypergeometric(cells, booms, drawn,
+                    random);
+            sum += k;
+            sumSquares += (double) k * k;
+        }
+        double mean = sum / trials;
+        double variance = sumSquares / trials - mean * mean;
+
+        double p = (double) booms / cells;
+        double expectedMean = drawn * p;
+        double expectedVariance = drawn * p * (1 - p)
+                * (cells - drawn) / (cells - 1.0);
+        // the mean is off by well under 5 standard errors, the variance by
+        // well under 5%
+        assertTrue(Math.abs(mean - expectedMean)
+                        < 5 * Math.sqrt(expectedVariance / trials),
+                "mean " + mean + ", expected " + expectedMean);
+        assertTrue(Math.abs(variance / expectedVariance - 1) < 0.05,
+                "variance " + variance + ", expected " + expectedVariance);
+    }
+
+    private static byte[] generateOn(int threads) throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.submit(() -> states(generate())).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static BoardStorage generate() {
+        BoardStorage board = new PackedBoard(ROWS, COLS);
+        BoomFieldLogic.generateBoard(board, BOOMS, SEED);
+        return board;
+    }
+
+    private static byte[] states(BoardStorage board) {
+        byte[] states = new byte[board.size()];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = (byte) board.packedState(i);
+        }
+        return states;
+    }
+}
@@ -0,0 +1,91 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Checks BoomFieldLogic.plantBooms (Floyd's sampling): it plants exactly
+ * the asked number of booms, every layout is about equally likely, and a
+ * seed always gives the same board.
+ */
+class PlantBoomsTest {
+
+    @Test
+    void plantsExactlyTheBoomsAskedForAtAnyDensity() {
+        Random random = new Random(1);
+        for (int booms = 0; booms <= 25; booms++) {
+            BoardStorage board = new PackedBoard(5, 5);
+            BoomFieldLogic.plantBooms(board, booms, random);
+            assertEquals(booms, countBooms(board), booms + " booms");
+        }
+    }
+
+    @Test
+    void everyLayoutIsAboutEquallyLikely() {
+        // 3 booms in 6 cells: 20 layouts, each drawn about 2000 times
+        int trials = 40_000;
+        int[] seen = new int[1 << 6];
+        Random random = new Random(42);
+        for (int t = 0; t < trials; t++) {
+            BoardStorage board = new PackedBoard(2, 3);
+            BoomFieldLogic.plantBooms(board, 3, random);
+            seen[layoutOf(board)]++;
+        }
+
+        int layouts = 0;
+        for (int layout = 0; layout < seen.length; layout++) {
+            if (Integer.bitCount(layout) != 3) {
+                assertEquals(0, seen[layout], "layout " + layout);
+                continue;
+            }
+            layouts++;
+            // about 5.5 standard deviations either way
+            assertTrue(Math.abs(seen[layout] - trials / 20) < 250,
+                    "layout " + layout + " drawn " + seen[layout] + " times");
+        }
+        assertEquals(20, layouts);
+    }
+
+    @Test
+    void sameSeedGivesSameBoard() {
+        assertArrayEquals(generate(30, 40, 240, 7L), generate(30, 40, 240, 7L));
+        assertFalse(Arrays.equals(generate(30, 40, 240, 7L),
+                generate(30, 40, 240, 8L)), "different seeds, same board");
+    }
+
+    private static byte[] generate(int rows, int cols, int booms, long seed) {
+        BoardStorage board = new PackedBoard(rows, cols);
+        BoomFieldLogic.generateBoard(board, booms, seed);
+        byte[] states = new byte[board.size()];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = (byte) board.packedState(i);
+        }
+        return states;
+    }
+
+    private static int layoutOf(BoardStorage board) {
+        int layout = 0;
+        for (int i = 0; i < board.size(); i++) {
+            if (board.hasBoom(i)) {
+                layout |= 1 << i;
+            }
+        }
+        return layout;
+    }
+
+    private static int countBooms(BoardStorage board) {
+        int booms = 0;
+        for (int i = 0; i < board.size(); i++) {
+            if (board.hasBoom(i)) {
+                booms++;
+            }
+        }
+        return booms;
+    }
+}
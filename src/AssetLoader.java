@@ -0,0 +1,172 @@
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+
+/**
+ * This class decodes the game's images and sounds on background threads
+ * so the window can open before any of them are ready. Every asset is
+ * loaded at most once and handed out as a CompletableFuture; the panels
+ * draw placeholders until their asset arrives and then swap it in on the
+ * EDT (see whenImageReady).
+ * <p>It also logs how long each startup phase took, measured from when
+ * the loader was first used, so slow assets are easy to spot (printed with
+ * -Dboomfield.log=info, see DebugLog).</p>
+ */
+public final class AssetLoader {
+
+    /** Icons used by the board's tiles. */
+    public static final String ICON_HIDDEN = "/icons/ground_tile.jpg";
+    public static final String ICON_FLAGGED = "/icons/flagged_tile.jpg";
+    public static final String ICON_MINE = "/icons/boomv2.jpg";
+    public static final String ICON_UNCOVERED = "/icons/ground_tile_revealed.jpg";
+    public static final String BACKGROUND = "/BOOMFIELD.png";
+
+    private static final AssetLoader INSTANCE = new AssetLoader();
+
+    private final long startNanos = System.nanoTime();
+    private final ExecutorService workers;
+    private final Map<String, CompletableFuture<?>> assets =
+            new ConcurrentHashMap<>();
+
+    private AssetLoader() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "boomfield-assets");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static AssetLoader get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts decoding every image and sound at once, and reports when the
+     * last one is done. Called first thing at startup.
+     */
+    public void preloadAll() {
+        List<CompletableFuture<?>> all = new ArrayList<>();
+        for (String icon : new String[] { ICON_HIDDEN, ICON_FLAGGED,
+                ICON_MINE, ICON_UNCOVERED, BACKGROUND }) {
+            all.add(image(icon));
+        }
+        for (SoundFX effect : SoundFX.values()) {
+            all.add(sound(effect.getPath()));
+        }
+        CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((done, error) -> mark("all assets ready"));
+    }
+
+    /**
+     * Decodes an image resource in the background.
+     * @param path resource path
+     * @return completes with the image, or with the error if it failed
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<BufferedImage> image(String path) {
+        return (CompletableFuture<BufferedImage>) assets.computeIfAbsent(path,
+                p -> load(p, () -> {
+                    try (InputStream in = open(p)) {
+                        BufferedImage image = ImageIO.read(in);
+                        if (image == null) {
+                            throw new IOException("Cannot decode image " + p);
+                        }
+                        return image;
+                    }
+                }));
+    }
+
+    /**
+     * Decodes a sound effect in the background into the mixer's format.
+     * @param path resource path
+     * @return completes with the samples (see SoundMixer.loadSamples)
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<short[]> sound(String path) {
+        return (CompletableFuture<short[]>) assets.computeIfAbsent(path,
+                p -> load(p, () -> SoundMixer.loadSamples(p)));
+    }
+
+    /**
+     * Hands an image to the EDT once it is decoded. If it is decoded
+     * already it is handed over right away on the calling thread, so a
+     * panel built after startup never shows its placeholders. If it fails
+     * to load the error is printed and the caller keeps its placeholder.
+     * @param path resource path
+     * @param swapIn receives the image, on the EDT unless it was ready
+     */
+    public void whenImageReady(String path, Consumer<BufferedImage> swapIn) {
+        CompletableFuture<BufferedImage> future = image(path);
+        if (future.isDone()) {
+            if (!future.isCompletedExceptionally()) {
+                swapIn.accept(future.join());
+            }
+            return;
+        }
+        future.whenComplete((image, error) -> {
+            if (error == null) {
+                SwingUtilities.invokeLater(() -> swapIn.accept(image));
+            }
+        });
+    }
+
+    /**
+     * Logs how long it took to reach a startup phase.
+     * @param phase name of the phase
+     */
+    public void mark(String phase) {
+        long at = elapsedMillis();
+        DebugLog.info(() -> "Startup: " + phase + " at " + at + " ms");
+    }
+
+    private long elapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Work that decodes one asset.
+     * @param <T> the decoded asset
+     */
+    private interface Decoder<T> {
+        T decode() throws Exception;
+    }
+
+    private <T> CompletableFuture<T> load(String path, Decoder<T> decoder) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        workers.execute(() -> {
+            long began = System.nanoTime();
+            try {
+                T asset = decoder.decode();
+                long took = (System.nanoTime() - began) / 1_000_000;
+                long at = elapsedMillis();
+                DebugLog.info(() -> "Startup: " + path + " decoded in " + took
+                        + " ms (ready at " + at + " ms)");
+                result.complete(asset);
+            } catch (Exception e) {
+                DebugLog.error(() -> "Failed to load asset: " + path, e);
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private static InputStream open(String path) throws IOException {
+        InputStream in = AssetLoader.class.getResourceAsStream(path);
+        if (in == null) {
+            throw new IOException("Resource not found: " + path);
+        }
+        return in;
+    }
+}
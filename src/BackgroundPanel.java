@@ -1,50 +1,85 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import javax.imageio.ImageIO;
-import java.io.IOException;
 
 
 /**
  * This class is a JPanel class that I am using to load up my custom
- * background image. It uses a BufferedImage that reads the image from the
+ * background image. It uses a BufferedImage that AssetLoader reads from the
  * resource directory and then paints the panel with the image.
+ * <p>The board is see-through, so every cell repaint also repaints the
+ * background under it. To keep that cheap the image is scaled to the
+ * panel's size once, into an image compatible with the screen, and a
+ * repaint only copies the part of that copy inside its clip. The scaled
+ * copy is rebuilt only when the panel changes size.</p>
  */
 public class BackgroundPanel extends JPanel {
 
     private BufferedImage backgroundImage;
+    private BufferedImage scaledImage;      // backgroundImage at panel size
 
     /**
-     * This constructs the background panel as makes it opaque.
+     * This constructs the background panel as makes it opaque. The image
+     * is decoded in the background by the AssetLoader, so the panel is
+     * plain until it arrives.
      */
     public BackgroundPanel() {
-        try {
-            backgroundImage = ImageIO.read(
-                    getClass().getResourceAsStream("/BOOMFIELD.png")
-            );
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        AssetLoader.get().whenImageReady(AssetLoader.BACKGROUND, image -> {
+            backgroundImage = image;
+            scaledImage = null;
+            repaint();
+        });
         setOpaque(true);
     }
 
     /**
-     * This method paints the buffered image onto the panel. It takes the
-     * standard/legacy Graphics and recasts it as a Graphics2D for more
-     * flexibility.
-     * @param g the object being recast and painted
+     * This method paints the buffered image onto the panel. It copies the
+     * pre-scaled image unscaled, so only the pixels inside the repaint's
+     * clip are touched.
+     * @param g the graphics being painted
      */
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
 
-        Graphics2D g2 = (Graphics2D) g.create();
+        BufferedImage scaled = scaledImage();
+        if (scaled == null) {
+            return;
+        }
+        // same size as the panel, so this is a plain copy that Java2D
+        // limits to the clip
+        g.drawImage(scaled, 0, 0, null);
+    }
+
+    /**
+     * The background scaled to the panel's current size, rebuilt if the
+     * panel was resized since it was made.
+     * @return scaled background, or null if there is nothing to draw yet
+     */
+    private BufferedImage scaledImage() {
         int w = getWidth();
         int h = getHeight();
-
-        if (backgroundImage != null) {
-            g2.drawImage(backgroundImage, 0, 0, w, h, this);
+        if (backgroundImage == null || w <= 0 || h <= 0) {
+            return null;
         }
+        if (scaledImage != null && scaledImage.getWidth() == w
+                && scaledImage.getHeight() == h) {
+            return scaledImage;
+        }
+
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        int transparency = backgroundImage.getTransparency();
+        BufferedImage scaled = (gc != null)
+                ? gc.createCompatibleImage(w, h, transparency)
+                : new BufferedImage(w, h, transparency == Transparency.OPAQUE
+                        ? BufferedImage.TYPE_INT_RGB
+                        : BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2 = scaled.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.drawImage(backgroundImage, 0, 0, w, h, null);
         g2.dispose();
+        scaledImage = scaled;
+        return scaled;
     }
 }
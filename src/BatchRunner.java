@@ -0,0 +1,222 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+
+/**
+ * This class plays large numbers of headless games with a pluggable move
+ * strategy, spread over all of the machine's cores, and reports how fast
+ * and how well the strategy played. Every game gets its own seed derived
+ * from the run seed and the game number, so a run is repeatable no matter
+ * how many threads it uses.
+ * <p>Usage: java BatchRunner [games] [rows] [cols] [booms] [strategy]
+ * [threads] [seed]</p>
+ */
+public class BatchRunner {
+
+    // games claimed by a worker at a time, keeps the shared counter cold
+    private static final int CLAIM_SIZE = 256;
+    private static final long MOVE_SEED_SALT = 0x5DEECE66DL;
+
+    private final int rows;
+    private final int cols;
+    private final int booms;
+    private final Supplier<MoveStrategy> strategyFactory;
+
+    /**
+     * The totals of a batch run.
+     */
+    public static final class Result {
+        private final long games;
+        private final long wins;
+        private final long cellsRevealed;
+        private final long moves;
+        private final long elapsedNanos;
+
+        Result(long games, long wins, long cellsRevealed, long moves,
+               long elapsedNanos) {
+            this.games = games;
+            this.wins = wins;
+            this.cellsRevealed = cellsRevealed;
+            this.moves = moves;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getGames() {
+            return games;
+        }
+
+        public long getWins() {
+            return wins;
+        }
+
+        public long getCellsRevealed() {
+            return cellsRevealed;
+        }
+
+        public long getMoves() {
+            return moves;
+        }
+
+        public double getGamesPerSecond() {
+            return games / (elapsedNanos / 1e9);
+        }
+
+        public double getWinRate() {
+            return games == 0 ? 0 : (double) wins / games;
+        }
+
+        public double getAverageCellsRevealed() {
+            return games == 0 ? 0 : (double) cellsRevealed / games;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d games in %.2f s (%,.0f games/s), "
+                            + "win rate %.2f%%, %.1f cells revealed per game, "
+                            + "%.1f moves per game",
+                    games, elapsedNanos / 1e9, getGamesPerSecond(),
+                    getWinRate() * 100, getAverageCellsRevealed(),
+                    games == 0 ? 0 : (double) moves / games);
+        }
+    }
+
+    /**
+     * Builds a runner for one board size.
+     * @param rows rows per board
+     * @param cols cols per board
+     * @param booms booms per board
+     * @param strategyFactory makes one strategy per worker thread
+     */
+    public BatchRunner(int rows, int cols, int booms,
+                       Supplier<MoveStrategy> strategyFactory) {
+        this.rows = rows;
+        this.cols = cols;
+        this.booms = booms;
+        this.strategyFactory = strategyFactory;
+    }
+
+    /**
+     * Plays the given number of games and waits for them to finish.
+     * @param games number of games to play
+     * @param threads number of worker threads
+     * @param seed seed for the whole run
+     * @return totals of the run
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Result run(long games, int threads, long seed)
+            throws InterruptedException {
+        AtomicLong nextGame = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+
+        try {
+            List<Callable<long[]>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(() -> playGames(nextGame, games, seed));
+            }
+
+            long wins = 0;
+            long cellsRevealed = 0;
+            long moves = 0;
+            for (Future<long[]> future : pool.invokeAll(workers)) {
+                long[] totals = future.get();
+                wins += totals[0];
+                cellsRevealed += totals[1];
+                moves += totals[2];
+            }
+            return new Result(games, wins, cellsRevealed, moves,
+                    System.nanoTime() - start);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch worker failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private long[] playGames(AtomicLong nextGame, long games, long seed) {
+        MoveStrategy strategy = strategyFactory.get();
+        int maxMoves = rows * cols * 2;
+        long wins = 0;
+        long cellsRevealed = 0;
+        long moves = 0;
+
+        long first;
+        while ((first = nextGame.getAndAdd(CLAIM_SIZE)) < games) {
+            long last = Math.min(games, first + CLAIM_SIZE);
+            for (long game = first; game < last; game++) {
+                long gameSeed = gameSeed(seed, game);
+                BoomFieldLogic logic = BoomFieldLogic.headless(rows, cols,
+                        booms, gameSeed, strategy.newGame(rows, cols));
+                Random random = new Random(gameSeed ^ MOVE_SEED_SALT);
+
+                int played = 0;
+                while (!logic.isGameOver() && played < maxMoves
+                        && strategy.makeMove(logic, logic, random)) {
+                    played++;
+                }
+
+                if (logic.isWon()) {
+                    wins++;
+                }
+                cellsRevealed += logic.getCellsRevealed();
+                moves += played;
+            }
+        }
+        return new long[] { wins, cellsRevealed, moves };
+    }
+
+    /**
+     * Derives the seed of one game from the run seed (SplitMix64 finalizer),
+     * so neighboring game numbers get unrelated boards.
+     * @param seed seed of the run
+     * @param game game number
+     * @return seed of the game
+     */
+    static long gameSeed(long seed, long game) {
+        long z = seed + (game + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Looks up a move strategy by its command line name.
+     * @param name strategy name
+     * @return factory for the strategy
+     */
+    static Supplier<MoveStrategy> strategyNamed(String name) {
+        if ("random".equals(name)) {
+            return RandomMoveStrategy::new;
+        }
+        if ("solver".equals(name)) {
+            return SolverMoveStrategy::new;
+        }
+        throw new IllegalArgumentException("Unknown strategy: " + name);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000L;
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+        int cols = args.length > 2 ? Integer.parseInt(args[2]) : 15;
+        int booms = args.length > 3 ? Integer.parseInt(args[3]) : 27;
+        String strategy = args.length > 4 ? args[4] : "random";
+        int threads = args.length > 5 ? Integer.parseInt(args[5])
+                : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 6 ? Long.parseLong(args[6]) : 1L;
+
+        BatchRunner runner = new BatchRunner(rows, cols, booms,
+                strategyNamed(strategy));
+        System.out.println("Playing " + games + " games of " + rows + "x"
+                + cols + " with " + booms + " booms (" + strategy
+                + " strategy, " + threads + " threads)");
+        System.out.println(runner.run(games, threads, seed));
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.Arrays;
+
+
+/**
+ * This class carries a batch of changed cells from the logic layer to the
+ * gui in one call. Each entry is the flat index of a cell (row * cols +
+ * col) and its packed state byte (see the bit constants in BoardStorage),
+ * kept in two parallel primitive arrays so a cascade of thousands of cells
+ * is one object instead of one callback per cell.
+ * <p>The logic layer reuses the same delta for every move, so a listener
+ * that wants to keep a delta after the callback returns must take a
+ * {@link #copy()}.</p>
+ */
+public final class BoardDelta {
+
+    /**
+     * Largest number of entries the logic layer collects before it hands a
+     * batch over, so a huge cascade never needs one giant buffer.
+     */
+    public static final int MAX_BATCH = 1 << 16;
+
+    private final int cols;
+    private int[] indices;
+    private byte[] states;
+    private int size = 0;
+
+    /**
+     * Builds an empty delta for a board with the given number of columns.
+     * @param cols number of cols on the board (used to decode indices)
+     * @param initialCapacity starting capacity
+     */
+    public BoardDelta(int cols, int initialCapacity) {
+        this.cols = cols;
+        this.indices = new int[Math.max(initialCapacity, 1)];
+        this.states = new byte[indices.length];
+    }
+
+    /**
+     * Records a changed cell.
+     * @param index flat index of the cell
+     * @param state packed state of the cell
+     */
+    public void add(int index, int state) {
+        if (size == indices.length) {
+            int capacity = indices.length << 1;
+            indices = Arrays.copyOf(indices, capacity);
+            states = Arrays.copyOf(states, capacity);
+        }
+        indices[size] = index;
+        states[size] = (byte) state;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public int indexAt(int i) {
+        return indices[i];
+    }
+
+    public int rowAt(int i) {
+        return indices[i] / cols;
+    }
+
+    public int colAt(int i) {
+        return indices[i] % cols;
+    }
+
+    /**
+     * Packed state of the i-th entry.
+     * @param i entry number
+     * @return state byte as an unsigned int
+     */
+    public int stateAt(int i) {
+        return states[i] & 0xFF;
+    }
+
+    /**
+     * Empties the delta but keeps its buffers for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns a trimmed copy of this delta that is safe to keep around.
+     * @return independent copy
+     */
+    public BoardDelta copy() {
+        BoardDelta copy = new BoardDelta(cols, size);
+        System.arraycopy(indices, 0, copy.indices, 0, size);
+        System.arraycopy(states, 0, copy.states, 0, size);
+        copy.size = size;
+        return copy;
+    }
+}
@@ -0,0 +1,367 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+
+/**
+ * This class reads and writes the binary save file for a board. The file
+ * is a fixed 64 byte header followed by four planes, each starting on an
+ * 8 byte boundary:
+ * <ul>
+ *     <li>boom plane - one bit per cell</li>
+ *     <li>flag plane - one bit per cell</li>
+ *     <li>hidden plane - one bit per cell</li>
+ *     <li>count plane - one nibble per cell (neighboring booms)</li>
+ * </ul>
+ * Cells are in flat index order (row * cols + col), least significant bit
+ * first. Both directions go through a MappedByteBuffer. Loading maps the
+ * file read-only and hands back a MappedBoard that reads the planes in
+ * place, so even a 100M-cell board loads without copying it into the heap
+ * (and a read-only save file loads fine). The first move on the loaded
+ * game switches it to a copy-on-write mapping (see mapForWrites), so
+ * playing it never changes the file on disk.
+ */
+public final class BoardFile {
+
+    static final byte[] MAGIC = "BOOMFLD1".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+
+    private BoardFile() {
+    }
+
+    /**
+     * Everything about a saved game that is not in the planes.
+     */
+    public static final class Header {
+        final int rows;
+        final int cols;
+        final int booms;
+        final long seed;
+        final int flagsUsed;
+        final int hiddenSafeCells;
+        final int boomsFlagged;
+        final int wrongFlags;
+        final boolean gameOver;
+        final boolean won;
+
+        Header(int rows, int cols, int booms, long seed, int flagsUsed,
+               int hiddenSafeCells, int boomsFlagged, int wrongFlags,
+               boolean gameOver, boolean won) {
+            this.rows = rows;
+            this.cols = cols;
+            this.booms = booms;
+            this.seed = seed;
+            this.flagsUsed = flagsUsed;
+            this.hiddenSafeCells = hiddenSafeCells;
+            this.boomsFlagged = boomsFlagged;
+            this.wrongFlags = wrongFlags;
+            this.gameOver = gameOver;
+            this.won = won;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getCols() {
+            return cols;
+        }
+
+        public int getBooms() {
+            return booms;
+        }
+    }
+
+    /**
+     * Where each plane starts in a file for a board with the given number
+     * of cells.
+     */
+    static final class Layout {
+        final long boomOffset;
+        final long flagOffset;
+        final long hiddenOffset;
+        final long countOffset;
+        final long fileSize;
+
+        Layout(int cells) {
+            long bitPlane = align8((cells + 7L) / 8);
+            long countPlane = align8((cells + 1L) / 2);
+            boomOffset = HEADER_SIZE;
+            flagOffset = boomOffset + bitPlane;
+            hiddenOffset = flagOffset + bitPlane;
+            countOffset = hiddenOffset + bitPlane;
+            fileSize = countOffset + countPlane;
+        }
+
+        private static long align8(long bytes) {
+            return (bytes + 7) & ~7L;
+        }
+    }
+
+    /**
+     * Writes a board and its header to a file, replacing the file if it
+     * already exists. The board is written to a temporary file next to it
+     * first and then moved over the old one, because the board being saved
+     * may be a MappedBoard of that very file: truncating it in place would
+     * wipe the game that is still being played from it.
+     * @param path file to write
+     * @param board board to save
+     * @param header game state that goes with the board
+     * @throws IOException if the file cannot be written or is too large
+     */
+    public static void write(Path path, BoardStorage board, Header header)
+            throws IOException {
+        int cells = board.size();
+        Layout layout = new Layout(cells);
+        checkMappable(layout.fileSize);
+
+        Path target = path.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(),
+                target.getFileName().toString(), ".tmp");
+        try {
+            writePlanes(temp, board, header, layout);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writePlanes(Path path, BoardStorage board,
+                                    Header header, Layout layout)
+            throws IOException {
+        int cells = board.size();
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+                    0, layout.fileSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            writeHeader(buffer, header);
+
+            int boomPos = (int) layout.boomOffset;
+            int flagPos = (int) layout.flagOffset;
+            int hiddenPos = (int) layout.hiddenOffset;
+            int countPos = (int) layout.countOffset;
+
+            // eight cells at a time make one byte of each bit plane
+            for (int base = 0; base < cells; base += 8) {
+                int booms = 0;
+                int flags = 0;
+                int hidden = 0;
+                int end = Math.min(cells, base + 8);
+                for (int i = base; i < end; i++) {
+                    int state = board.packedState(i);
+                    int bit = 1 << (i - base);
+                    if ((state & BoardStorage.BOOM) != 0) {
+                        booms |= bit;
+                    }
+                    if ((state & BoardStorage.FLAGGED) != 0) {
+                        flags |= bit;
+                    }
+                    if ((state & BoardStorage.HIDDEN) != 0) {
+                        hidden |= bit;
+                    }
+                    if ((i & 1) == 1 || i == cells - 1) {
+                        int pair = ((state >> BoardStorage.COUNT_SHIFT)
+                                & BoardStorage.COUNT_MASK) << ((i & 1) * 4);
+                        if ((i & 1) == 1) {
+                            pair |= (board.packedState(i - 1)
+                                    >> BoardStorage.COUNT_SHIFT) & BoardStorage.COUNT_MASK;
+                        }
+                        buffer.put(countPos + (i >> 1), (byte) pair);
+                    }
+                }
+                int offset = base >> 3;
+                buffer.put(boomPos + offset, (byte) booms);
+                buffer.put(flagPos + offset, (byte) flags);
+                buffer.put(hiddenPos + offset, (byte) hidden);
+            }
+            buffer.force();
+        }
+    }
+
+    /**
+     * Reads only the header of a save file, for example to size the board
+     * before loading it.
+     * @param path file to read
+     * @return the file's header
+     * @throws IOException if the file cannot be read or is not a board file
+     */
+    public static Header readHeader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Truncated board file: " + path);
+                }
+            }
+            buffer.flip();
+            return readHeader(buffer, path, channel.size());
+        }
+    }
+
+    /**
+     * Maps a save file read-only and returns its board, which reads the
+     * planes in place.
+     * @param path file to load
+     * @return the loaded board
+     * @throws IOException if the file cannot be read or is not a board file
+     */
+    public static MappedBoard read(Path path) throws IOException {
+        Object identity = identityOf(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            checkMappable(size);
+            if (size < HEADER_SIZE) {
+                throw new IOException("Truncated board file: " + path);
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            Header header = readHeader(buffer, path, size);
+            return new MappedBoard(header, buffer, path, identity);
+        }
+    }
+
+    /**
+     * Gives a loaded board a mapping it can write to, for its first move.
+     * If the save file it was loaded from is still there and writable it
+     * is mapped again copy-on-write, so only the pages the moves touch are
+     * ever copied. Otherwise (a read-only file, or a file that has been
+     * replaced since, for example by saving over it) the loaded planes are
+     * copied to a temporary file that is deleted once it is unmapped.
+     * @param path file the board was loaded from
+     * @param identity what identityOf returned for it at load time
+     * @param loaded the read-only mapping the board was loaded with
+     * @return a writable mapping with the same contents
+     * @throws IOException if no writable mapping can be made
+     */
+    static MappedByteBuffer mapForWrites(Path path, Object identity,
+                                         MappedByteBuffer loaded)
+            throws IOException {
+        long size = loaded.capacity();
+        if (identity != null && identity.equals(identityOf(path))) {
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return (MappedByteBuffer) channel.map(FileChannel.MapMode.PRIVATE,
+                        0, size).order(ByteOrder.LITTLE_ENDIAN);
+            } catch (AccessDeniedException e) {
+                // read-only save file, fall through to a private copy
+            }
+        }
+
+        Path copy = Files.createTempFile("boomfield", ".board");
+        try (FileChannel channel = FileChannel.open(copy,
+                StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+                    0, size);
+            buffer.put(0, loaded, 0, (int) size);
+            return (MappedByteBuffer) buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Something that tells one file from another at the same path: the
+     * file key where the file system has one, otherwise the modification
+     * time.
+     * @return the identity, or null if the file cannot be read
+     */
+    private static Object identityOf(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path,
+                    BasicFileAttributes.class);
+            Object key = attributes.fileKey();
+            return key != null ? key : attributes.lastModifiedTime();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeHeader(ByteBuffer buffer, Header header) {
+        buffer.put(0, MAGIC);
+        buffer.putInt(8, VERSION);
+        buffer.putInt(12, header.rows);
+        buffer.putInt(16, header.cols);
+        buffer.putInt(20, header.booms);
+        buffer.putLong(24, header.seed);
+        buffer.putInt(32, header.flagsUsed);
+        buffer.putInt(36, header.hiddenSafeCells);
+        buffer.putInt(40, header.boomsFlagged);
+        buffer.putInt(44, header.wrongFlags);
+        buffer.put(48, (byte) (header.gameOver ? 1 : 0));
+        buffer.put(49, (byte) (header.won ? 1 : 0));
+    }
+
+    /**
+     * Reads and checks a header. A damaged or made up file must not get as
+     * far as sizing the board or the gui from it, so everything the game
+     * would trust is checked against the file it came from.
+     */
+    private static Header readHeader(ByteBuffer buffer, Path path,
+                                     long fileSize) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(0, magic);
+        if (!java.util.Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a BoomField board file: " + path);
+        }
+        int version = buffer.getInt(8);
+        if (version != VERSION) {
+            throw new IOException("Unsupported board file version " + version
+                    + ": " + path);
+        }
+        Header header = new Header(buffer.getInt(12), buffer.getInt(16),
+                buffer.getInt(20), buffer.getLong(24), buffer.getInt(32),
+                buffer.getInt(36), buffer.getInt(40), buffer.getInt(44),
+                buffer.get(48) != 0, buffer.get(49) != 0);
+
+        int cells;
+        try {
+            cells = BoardStorage.checkedSize(header.rows, header.cols);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Bad board size in " + path + ": "
+                    + e.getMessage());
+        }
+        if (fileSize < new Layout(cells).fileSize) {
+            throw new IOException("Truncated board file: " + path);
+        }
+        if (header.booms < 0 || header.booms > cells) {
+            throw new IOException("Bad boom count " + header.booms
+                    + " for " + cells + " cells: " + path);
+        }
+        if (!inRange(header.flagsUsed, cells)
+                || !inRange(header.hiddenSafeCells, cells - header.booms)
+                || !inRange(header.boomsFlagged, header.booms)
+                || !inRange(header.wrongFlags, cells - header.booms)) {
+            throw new IOException("Bad game counters in board file: " + path);
+        }
+        return header;
+    }
+
+    private static boolean inRange(int value, int max) {
+        return value >= 0 && value <= max;
+    }
+
+    private static void checkMappable(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Board file too large to map: " + size + " bytes");
+        }
+    }
+}
@@ -2,47 +2,75 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.Arrays;
 
 /**
  * This is a JPanel class that handles the cell representation of our hex
  * board based on the current game state and the user's interactions with the
  * cells.
+ * <p>The panel keeps one packed state byte per cell (the bit layout from
+ * BoardStorage) and no per-cell objects. A cell's hex is worked out from
+ * its row and column whenever it is painted or hit-tested, so a board far
+ * larger than the window costs one byte per cell.</p>
  */
 public class BoardPanel extends JPanel {
 
-    private static class CellView {
-        boolean hasBoom;
-        boolean flagged;
-        boolean hidden = true;
-        int neighboringBooms = 0;
-
-        Polygon shape;   // hex polygon for this cell
-    }
-
     private final int rows;
     private final int cols;
-    private final CellView[][] cells;
+    private final byte[] states;   // packed state of every cell, row-major
 
     private GUIToLogic logic;
 
     private boolean firstClickOccurred = false;
     private Runnable firstClickCallback;
 
+    // cell picked out by the Hint button, -1 for none
+    private int hintIndex = -1;
+    private boolean hintSafe;
+    private static final Color SAFE_HINT = new Color(60, 220, 90);
+    private static final Color BOOM_HINT = new Color(235, 60, 50);
+
     private static final int HEX_SIZE = 22;
     private static final int MARGIN   = 8;
     private static final int GRID_SHIFT_HORIZ = 190;
     private static final int GRID_SHIFT_VERT  = 25;
 
+    // corners of a hex relative to its center, pointy side up
+    private static final double[] CORNER_X = new double[6];
+    private static final double[] CORNER_Y = new double[6];
+    static {
+        for (int i = 0; i < 6; i++) {
+            double angleRad = Math.toRadians(60 * i - 30);
+            CORNER_X[i] = HEX_SIZE * Math.cos(angleRad);
+            CORNER_Y[i] = HEX_SIZE * Math.sin(angleRad);
+        }
+    }
+
+    /** Scroll distance for one scroll bar click, roughly one hex row. */
+    static final int SCROLL_STEP = 33;
+
     private final double hexWidth;
     private final double hexHeight;
     private final double vertStep;
 
+    // hex traced by cellAt, so hit-testing allocates nothing
+    private final Polygon hitHex = new Polygon();
+
     // --- Cell icons ---
     private Image iconHidden;
     private Image iconFlagged;
     private Image iconMine;
     private Image iconUncovered;
 
+    // pre-rendered tiles, built on first paint and again when an icon loads
+    private TileSprites sprites;
+
+    // click still waiting for its frame, for the InputLatency event
+    private long pendingInputNanos = 0;
+    private long pendingInputVersion = 0;
+    private String pendingInputButton;
+    private GameEngine engine;
+
 
     /**
      * This method constructs the playing board with our hex geometry. I used
@@ -54,19 +82,14 @@ public class BoardPanel extends JPanel {
     public BoardPanel(int rows, int cols) {
         this.rows = rows;
         this.cols = cols;
-        this.cells = new CellView[rows][cols];
-
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                cells[r][c] = new CellView();
-            }
-        }
+        this.states = new byte[BoardStorage.checkedSize(rows, cols)];
+        Arrays.fill(states, (byte) BoardStorage.HIDDEN);
 
         hexWidth  = Math.sqrt(3.0) * HEX_SIZE;
         hexHeight = 2.0 * HEX_SIZE;
         vertStep  = 1.5 * HEX_SIZE;
 
-        buildHexGeometry();
+        setPreferredSize(boardSize());
         loadIcons();
 
         setBackground(Color.DARK_GRAY);
@@ -79,7 +102,20 @@ public class BoardPanel extends JPanel {
      * @param logic logic from our BoomFieldLogic
      */
     public void setLogic(GUIToLogic logic) {
+        setLogic(logic, logic instanceof GameEngine ? (GameEngine) logic : null);
+    }
+
+    /**
+     * Same as setLogic, for clicks that are passed on to an engine by
+     * something in between (like the endless mode's window).
+     * @param logic receives the clicks
+     * @param engine engine the moves end up on, or null if there is none
+     */
+    public void setLogic(GUIToLogic logic, GameEngine engine) {
         this.logic = logic;
+        // moves through an engine reach the board a few frames later, see
+        // commitInputLatency
+        this.engine = engine;
     }
 
     /**
@@ -99,70 +135,177 @@ public class BoardPanel extends JPanel {
      */
     public void resetInteractionState() {
         firstClickOccurred = false;
+        pendingInputNanos = 0;
+        clearHint();
     }
 
-    private void loadIcons() {
-        try {
-            ClassLoader cl = getClass().getClassLoader();
-
-            iconHidden    =
-                    new ImageIcon(cl.getResource("icons/" +
-                            "ground_tile.jpg")).getImage();
-            iconFlagged   =
-                    new ImageIcon(cl.getResource("icons/" +
-                            "flagged_tile.jpg")).getImage();
-            iconMine      =
-                    new ImageIcon(cl.getResource("icons/" +
-                            "boomv2.jpg")).getImage();
-            iconUncovered =
-                    new ImageIcon(cl.getResource("icons/" +
-                            "ground_tile_revealed.jpg")).getImage();
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Outlines a cell to show a hint: green for a cell that is safe to dig,
+     * red for a boom that still needs a flag. The outline goes away as soon
+     * as the cell changes.
+     * @param row row of cell
+     * @param col col of cell
+     * @param safe true for a safe cell, false for a boom
+     */
+    public void showHint(int row, int col, boolean safe) {
+        clearHint();
+        hintIndex = row * cols + col;
+        hintSafe = safe;
+        repaintCell(row, col);
+    }
+
+    /**
+     * Removes the hint outline, if there is one.
+     */
+    public void clearHint() {
+        if (hintIndex >= 0) {
+            int index = hintIndex;
+            hintIndex = -1;
+            repaintCell(index / cols, index % cols);
         }
     }
 
+    /**
+     * Asks the AssetLoader for the four tile icons. Until an icon is
+     * decoded its tiles are drawn as flat placeholders; when it arrives the
+     * sprites are thrown away so the next paint renders them again with
+     * the icon.
+     */
+    private void loadIcons() {
+        AssetLoader assets = AssetLoader.get();
+        assets.whenImageReady(AssetLoader.ICON_HIDDEN, image -> {
+            iconHidden = image;
+            invalidateSprites();
+        });
+        assets.whenImageReady(AssetLoader.ICON_FLAGGED, image -> {
+            iconFlagged = image;
+            invalidateSprites();
+        });
+        assets.whenImageReady(AssetLoader.ICON_MINE, image -> {
+            iconMine = image;
+            invalidateSprites();
+        });
+        assets.whenImageReady(AssetLoader.ICON_UNCOVERED, image -> {
+            iconUncovered = image;
+            invalidateSprites();
+        });
+    }
+
+    private void invalidateSprites() {
+        sprites = null;
+        repaint();
+    }
 
 
-    private void buildHexGeometry() {
 
+    private Dimension boardSize() {
         int panelWidth = (int) Math.ceil(
                 MARGIN * 2 + GRID_SHIFT_HORIZ + hexWidth * cols + hexWidth / 2.0
         );
         int panelHeight = (int) Math.ceil(
                 MARGIN * 2 + GRID_SHIFT_VERT + hexHeight + vertStep * (rows - 1)
         );
-        setPreferredSize(new Dimension(panelWidth, panelHeight));
-
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-
+        return new Dimension(panelWidth, panelHeight);
+    }
 
-                double centerX = GRID_SHIFT_HORIZ
-                        + MARGIN
-                        + c * hexWidth
-                        + ((r % 2) * (hexWidth / 2.0));
+    /**
+     * Sets a polygon to the hex of a cell. The corners are rounded to whole
+     * pixels the same way for every cell, so neighboring hexes share their
+     * edges exactly.
+     * @param hex polygon to overwrite
+     * @param row row of cell
+     * @param col col of cell
+     */
+    private void traceHex(Polygon hex, int row, int col) {
+        double centerX = centerX(row, col);
+        double centerY = centerY(row);
+        hex.reset();
+        for (int i = 0; i < 6; i++) {
+            hex.addPoint((int) Math.round(centerX + CORNER_X[i]),
+                    (int) Math.round(centerY + CORNER_Y[i]));
+        }
+    }
 
-                double centerY = GRID_SHIFT_VERT
-                        + MARGIN
-                        + hexHeight / 2.0
-                        + r * vertStep;
+    private double centerX(int row, int col) {
+        return GRID_SHIFT_HORIZ
+                + MARGIN
+                + col * hexWidth
+                + ((row % 2) * (hexWidth / 2.0));
+    }
 
-                Polygon poly = new Polygon();
+    private double centerY(int row) {
+        return GRID_SHIFT_VERT
+                + MARGIN
+                + hexHeight / 2.0
+                + row * vertStep;
+    }
 
-                /* Note to Grader: I cannot truncate these to fit limit */
-                for (int i = 0; i < 6; i++) {
-                    double angleRad = Math.toRadians(60 * i - 30);
-                    int vx =
-                            (int) Math.round(centerX + HEX_SIZE * Math.cos(angleRad));
-                    int vy =
-                            (int) Math.round(centerY + HEX_SIZE * Math.sin(angleRad));
-                    poly.addPoint(vx, vy);
+    /**
+     * This method finds the cell under a pixel. Instead of testing every
+     * cell's polygon it inverts the hex layout math from centerX and centerY
+     * to get the (at most two) rows and columns whose hexes can reach the
+     * point, and only traces and tests the hexes of those. The candidates are
+     * checked in the same row-major order as a full scan would, so points
+     * on a shared edge resolve to exactly the same cell as before.
+     * @param x x coordinate in panel space
+     * @param y y coordinate in panel space
+     * @return flat index (row * cols + col) of the cell, or -1 if none
+     */
+    int cellAt(int x, int y) {
+        // vertices are rounded to whole pixels, so allow one extra pixel
+        double reachY = HEX_SIZE + 1;
+        double reachX = hexWidth / 2.0 + 1;
+
+        int rowMin = firstRowReaching(y, reachY);
+        int rowMax = lastRowReaching(y, reachY);
+
+        for (int r = rowMin; r <= rowMax; r++) {
+            int colMin = firstColReaching(r, x, reachX);
+            int colMax = lastColReaching(r, x, reachX);
+
+            for (int c = colMin; c <= colMax; c++) {
+                traceHex(hitHex, r, c);
+                if (hitHex.contains(x, y)) {
+                    return r * cols + c;
                 }
-
-                cells[r][c].shape = poly;
             }
         }
+        return -1;
+    }
+
+    // first row whose center is within reach of y (or below it)
+    private int firstRowReaching(double y, double reach) {
+        return Math.max(0,
+                (int) Math.ceil((y - reach - centerY(0)) / vertStep));
+    }
+
+    // last row whose center is within reach of y (or above it)
+    private int lastRowReaching(double y, double reach) {
+        return Math.min(rows - 1,
+                (int) Math.floor((y + reach - centerY(0)) / vertStep));
+    }
+
+    private int firstColReaching(int row, double x, double reach) {
+        return Math.max(0,
+                (int) Math.ceil((x - reach - centerX(row, 0)) / hexWidth));
+    }
+
+    private int lastColReaching(int row, double x, double reach) {
+        return Math.min(cols - 1,
+                (int) Math.floor((x + reach - centerX(row, 0)) / hexWidth));
+    }
+
+    /**
+     * The hex polygon drawn for a cell, which is what cellAt tests points
+     * against.
+     * @param row row of cell
+     * @param col col of cell
+     * @return a new polygon of the cell's hex
+     */
+    Polygon cellShape(int row, int col) {
+        Polygon hex = new Polygon();
+        traceHex(hex, row, col);
+        return hex;
     }
 
 
@@ -182,15 +325,59 @@ public class BoardPanel extends JPanel {
                                boolean hidden,
                                int neighboringBooms) {
 
-        CellView cv = cells[row][col];
-        cv.hasBoom = hasBoom;
-        cv.flagged = flagged;
-        cv.hidden = hidden;
-        cv.neighboringBooms = neighboringBooms;
+        int index = row * cols + col;
+        if (index == hintIndex) {
+            hintIndex = -1;
+        }
+        int state = hasBoom ? BoardStorage.BOOM
+                : (neighboringBooms & BoardStorage.COUNT_MASK)
+                        << BoardStorage.COUNT_SHIFT;
+        if (flagged) {
+            state |= BoardStorage.FLAGGED;
+        }
+        if (hidden) {
+            state |= BoardStorage.HIDDEN;
+        }
+        states[index] = (byte) state;
 
         repaintCell(row, col);
     }
 
+    /**
+     * This is the batched version of updateCellView. It applies every cell
+     * change from one move and then asks for a single repaint covering the
+     * merged bounds of all the changed cells, instead of one repaint per
+     * cell.
+     * @param delta cells changed by the move
+     */
+    public void applyDelta(BoardDelta delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+
+        int rowMin = Integer.MAX_VALUE;
+        int rowMax = Integer.MIN_VALUE;
+        double minX = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+
+        for (int i = 0; i < delta.size(); i++) {
+            int index = delta.indexAt(i);
+            if (index == hintIndex) {
+                hintIndex = -1;     // repainted with the rest of the delta
+            }
+            states[index] = (byte) delta.stateAt(i);
+
+            int row = delta.rowAt(i);
+            double centerX = centerX(row, delta.colAt(i));
+            rowMin = Math.min(rowMin, row);
+            rowMax = Math.max(rowMax, row);
+            minX = Math.min(minX, centerX);
+            maxX = Math.max(maxX, centerX);
+        }
+
+        repaintHexes(minX, centerY(rowMin), maxX, centerY(rowMax));
+    }
+
     /**
      * Method called when board needs to be repainted
      */
@@ -199,12 +386,23 @@ public class BoardPanel extends JPanel {
     }
 
     private void repaintCell(int row, int col) {
-        Polygon p = cells[row][col].shape;
-        if (p != null) {
-            Rectangle bounds = p.getBounds();
-            repaint(bounds.x - 1, bounds.y - 1,
-                    bounds.width + 2, bounds.height + 2);
-        }
+        double centerX = centerX(row, col);
+        double centerY = centerY(row);
+        repaintHexes(centerX, centerY, centerX, centerY);
+    }
+
+    /**
+     * Repaints the area covered by the hexes centered anywhere in a box.
+     * Three pixels of slack cover the rounded corners and the hint
+     * outline.
+     */
+    private void repaintHexes(double minCenterX, double minCenterY,
+                              double maxCenterX, double maxCenterY) {
+        int x = (int) Math.floor(minCenterX - hexWidth / 2.0) - 3;
+        int y = (int) Math.floor(minCenterY - HEX_SIZE) - 3;
+        repaint(x, y,
+                (int) Math.ceil(maxCenterX + hexWidth / 2.0) + 3 - x,
+                (int) Math.ceil(maxCenterY + HEX_SIZE) + 3 - y);
     }
 
 
@@ -220,33 +418,47 @@ public class BoardPanel extends JPanel {
              * order to trigger which action is to be performed as well as
              * firing their associated sound effects (uncovering+digging
              * sound for left-clicks and flag toggle+sound for right-clicks).
+             * A middle-click, or pressing both buttons together, chords on
+             * the number under the mouse.
              * @param e the mouse click event
              */
             @Override
             public void mousePressed(MouseEvent e) {
                 if (logic == null) return;
+                long pressed = System.nanoTime();
 
                 int x = e.getX();
                 int y = e.getY();
 
-                int hitRow = -1;
-                int hitCol = -1;
-
-                outer:
-                for (int r = 0; r < rows; r++) {
-                    for (int c = 0; c < cols; c++) {
-                        Polygon p = cells[r][c].shape;
-                        if (p != null && p.contains(x, y)) {
-                            hitRow = r;
-                            hitCol = c;
-                            break outer;
-                        }
-                    }
+                int hit = cellAt(x, y);
+                if (hit == -1) return;
+
+                int hitRow = hit / cols;
+                int hitCol = hit % cols;
+
+                // only clicks that change the cell are sure to be painted
+                int target = states[hit];
+                boolean hidden = (target & BoardStorage.HIDDEN) != 0;
+                boolean flagged = (target & BoardStorage.FLAGGED) != 0;
+                if (pendingInputNanos == 0 && hidden
+                        && (SwingUtilities.isRightMouseButton(e)
+                        || (SwingUtilities.isLeftMouseButton(e) && !flagged))) {
+                    pendingInputNanos = pressed;
+                    // the move's delta is the next one the engine publishes
+                    pendingInputVersion = engine == null ? 0
+                            : engine.getPublishedVersion() + 1;
+                    pendingInputButton = SwingUtilities.isLeftMouseButton(e)
+                            ? "left" : "right";
                 }
 
-                if (hitRow == -1) return;
-
-                if (SwingUtilities.isLeftMouseButton(e)) {
+                int both = MouseEvent.BUTTON1_DOWN_MASK
+                        | MouseEvent.BUTTON3_DOWN_MASK;
+                if (SwingUtilities.isMiddleMouseButton(e)
+                        || (e.getModifiersEx() & both) == both) {
+                    // chord: middle click, or both buttons on a number
+                    SoundFX.DIGGING.play();
+                    logic.chord(hitRow, hitCol);
+                } else if (SwingUtilities.isLeftMouseButton(e)) {
 
                     if (!firstClickOccurred) {
                         firstClickOccurred = true;
@@ -265,99 +477,110 @@ public class BoardPanel extends JPanel {
     }
 
 
-    private Image chooseIconForCell(CellView cv) {
-        if (cv.hidden) {
-            if (cv.flagged) {
-                return (iconFlagged != null ? iconFlagged : iconHidden);
-            } else {
-                return iconHidden;
-            }
-        } else {
-            if (cv.hasBoom) {
-                return iconMine;
-            } else {
-                return iconUncovered;
-            }
+    private TileSprites tileSprites() {
+        if (sprites == null) {
+            sprites = new TileSprites(HEX_SIZE, getFont(),
+                    getGraphicsConfiguration(),
+                    iconHidden, iconFlagged, iconMine, iconUncovered);
         }
+        return sprites;
     }
 
 
     /**
-     * This method repaints the cells when the user clicks on one. I chose to
-     * use Graphics2D's antialiasing here for better visuals. I learned that
-     * Swing does not clear out a Graphics2D like it automatically does with
-     * the legacy Graphics object and that it needs a .dispose() method to
-     * free the resources.
+     * This method repaints the cells when the user clicks on one. Every
+     * tile look is pre-rendered once by TileSprites (scaled, masked to the
+     * hex, outlined, and numbered), so each cell here is a single blit
+     * with no clipping, scaling or font work. Only the rows and columns
+     * whose hexes reach into the clip are drawn, so a single cell repaint
+     * or a small scrolled viewport on a huge board only touches the cells
+     * that are actually visible. I learned that Swing does not
+     * clear out a Graphics2D like it automatically does with the legacy
+     * Graphics object and that it needs a .dispose() method to free the
+     * resources.
      * @param g our graphics object to be painted
      */
     @Override
     protected void paintComponent(Graphics g) {
+        GameEvents.Paint event = new GameEvents.Paint();
+        event.begin();
         super.paintComponent(g);
         Graphics2D g2 = (Graphics2D) g.create();
+        TileSprites tiles = tileSprites();
+        int drawn = 0;
 
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                RenderingHints.VALUE_ANTIALIAS_ON);
-
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                drawCell(g2, cells[r][c]);
-            }
+        Rectangle clip = g2.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
         }
-        g2.dispose();
-    }
 
-    private void drawCell(Graphics2D g2, CellView cv) {
-        Polygon p = cv.shape;
-        if (p == null) return;
+        // a sprite reaches a little past the hex itself (outline pixels)
+        double reachY = HEX_SIZE + 2;
+        double reachX = hexWidth / 2.0 + 2;
 
-        Rectangle bounds = p.getBounds();
+        int rowMin = firstRowReaching(clip.y, reachY);
+        int rowMax = lastRowReaching(clip.y + clip.height, reachY);
 
-        Image icon = chooseIconForCell(cv);
-
-        if (icon != null) {
-            int padding = 0; // small margin so the border is visible
-            int size = Math.min(bounds.width, bounds.height) - 2 * padding;
-            if (size < 0) size = 0;
-
-            int drawX = bounds.x + (bounds.width - size) / 2;
-            int drawY = bounds.y + (bounds.height - size) / 2;
-
-            Shape oldClip = g2.getClip();
-            g2.setClip(p);
-            g2.drawImage(icon, drawX, drawY, size, size, this);
-            g2.setClip(oldClip);
-        } else {
-            if (cv.hidden) {
-                g2.setColor(new Color(70, 70, 70));
-            } else {
-                g2.setColor(new Color(170, 170, 170));
+        for (int r = rowMin; r <= rowMax; r++) {
+            int centerY = (int) Math.round(centerY(r));
+            int colMin = firstColReaching(r, clip.x, reachX);
+            int colMax = lastColReaching(r, clip.x + clip.width, reachX);
+            for (int c = colMin; c <= colMax; c++) {
+                tiles.draw(g2, spriteFor(states[r * cols + c]),
+                        (int) Math.round(centerX(r, c)), centerY);
             }
-            g2.fillPolygon(p);
+            drawn += Math.max(0, colMax - colMin + 1);
         }
 
-        g2.setColor(Color.BLACK);
-        g2.drawPolygon(p);
+        if (hintIndex >= 0) {
+            Polygon hint = cellShape(hintIndex / cols, hintIndex % cols);
+            if (hint.getBounds().intersects(clip)) {
+                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                        RenderingHints.VALUE_ANTIALIAS_ON);
+                g2.setColor(hintSafe ? SAFE_HINT : BOOM_HINT);
+                g2.setStroke(new BasicStroke(3f));
+                g2.drawPolygon(hint);
+            }
+        }
+        g2.dispose();
 
-        if (!cv.hidden && !cv.hasBoom && cv.neighboringBooms > 0) {
-            drawCenteredString(g2,
-                    Integer.toString(cv.neighboringBooms),
-                    bounds);
+        event.end();
+        if (event.shouldCommit()) {
+            event.cellsDrawn = drawn;
+            event.clipWidth = clip.width;
+            event.clipHeight = clip.height;
+            event.commit();
         }
+        commitInputLatency();
     }
 
-    private void drawCenteredString(Graphics2D g2, String text,
-                                    Rectangle bounds) {
-        Font font = g2.getFont().deriveFont(Font.BOLD, 14f);
-        g2.setFont(font);
-        FontMetrics fm = g2.getFontMetrics();
-
-        int textWidth = fm.stringWidth(text);
-        int textHeight = fm.getAscent();
-
-        int x = bounds.x + (bounds.width - textWidth) / 2;
-        int y = bounds.y + (bounds.height + textHeight) / 2 - 2;
+    private static int spriteFor(int state) {
+        boolean hasBoom = (state & BoardStorage.BOOM) != 0;
+        return TileSprites.spriteFor((state & BoardStorage.HIDDEN) != 0,
+                (state & BoardStorage.FLAGGED) != 0, hasBoom,
+                hasBoom ? -1 : (state >> BoardStorage.COUNT_SHIFT)
+                        & BoardStorage.COUNT_MASK);
+    }
 
-        g2.setColor(Color.BLACK);
-        g2.drawString(text, x, y);
+    /**
+     * Records the time from the oldest click not yet painted to the end of
+     * this paint, if a Flight Recorder recording wants it. With a GameEngine
+     * in between, a paint can come before the engine has even run the move,
+     * so the event waits for the first paint after the gui has applied the
+     * move's delta; without one the move is applied before the click
+     * returns, so the next paint is the one.
+     */
+    private void commitInputLatency() {
+        if (pendingInputNanos == 0 || (engine != null
+                && engine.getAppliedVersion() < pendingInputVersion)) {
+            return;
+        }
+        GameEvents.InputLatency latency = new GameEvents.InputLatency();
+        if (latency.shouldCommit()) {
+            latency.button = pendingInputButton;
+            latency.latency = System.nanoTime() - pendingInputNanos;
+            latency.commit();
+        }
+        pendingInputNanos = 0;
     }
 }
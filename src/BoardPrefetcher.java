@@ -0,0 +1,129 @@
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * This class plants the next board in the background while the current
+ * game is being played, so "Start New Game" only has to swap it in. There
+ * is only ever one board being prepared: asking for a different size or
+ * boom count (like picking another difficulty) cancels the old one and
+ * starts on the new one.
+ */
+public class BoardPrefetcher {
+
+    private final ExecutorService worker =
+            Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "boomfield-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private Prepared next;      // guarded by this
+
+    /**
+     * A board being planted in the background, and what it was asked for.
+     */
+    private static final class Prepared {
+        final int rows;
+        final int cols;
+        final int booms;
+        final long seed;
+        final Future<BoardStorage> board;
+
+        Prepared(int rows, int cols, int booms, long seed,
+                 Future<BoardStorage> board) {
+            this.rows = rows;
+            this.cols = cols;
+            this.booms = booms;
+            this.seed = seed;
+            this.board = board;
+        }
+
+        boolean matches(int rows, int cols, int booms) {
+            return this.rows == rows && this.cols == cols
+                    && this.booms == booms;
+        }
+    }
+
+    /**
+     * Starts planting the next board, unless that board is already being
+     * prepared. Any other board still being prepared is cancelled.
+     * @param rows rows of the next board
+     * @param cols cols of the next board
+     * @param booms booms on the next board
+     */
+    public synchronized void prefetch(int rows, int cols, int booms) {
+        if (next != null && next.matches(rows, cols, booms)) {
+            return;
+        }
+        cancel();
+        long seed = new Random().nextLong();
+        BoardStorage.Layout layout = BoardStorage.Layout.forSize(rows, cols);
+        next = new Prepared(rows, cols, booms, seed, worker.submit(
+                () -> BoomFieldLogic.generate(layout, rows, cols, booms, seed)));
+    }
+
+    /**
+     * Drops the board being prepared, if any.
+     */
+    public synchronized void cancel() {
+        if (next != null) {
+            next.board.cancel(true);
+            next = null;
+        }
+    }
+
+    /**
+     * Hands out a factory for a journaled new game on the prepared board,
+     * if it fits. The factory waits for the planting to finish if it is
+     * still going. The prepared board is used up either way.
+     * @param rows rows of the new game
+     * @param cols cols of the new game
+     * @param booms booms in the new game
+     * @return factory to pass to GameEngine.replaceGame, or null if no
+     * prepared board fits
+     */
+    public synchronized GameEngine.GameFactory take(int rows, int cols,
+                                                    int booms) {
+        Prepared prepared = next;
+        next = null;
+        if (prepared == null || !prepared.matches(rows, cols, booms)) {
+            if (prepared != null) {
+                prepared.board.cancel(true);
+            }
+            return null;
+        }
+        return listener -> {
+            BoomFieldLogic game = new BoomFieldLogic(awaitBoard(prepared),
+                    booms, prepared.seed, listener);
+            game.enableJournal();
+            return game;
+        };
+    }
+
+    private static BoardStorage awaitBoard(Prepared prepared) {
+        try {
+            return prepared.board.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a board", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Stops the background thread.
+     */
+    public synchronized void shutdown() {
+        cancel();
+        worker.shutdownNow();
+    }
+}
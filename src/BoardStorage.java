@@ -0,0 +1,145 @@
+/**
+ * This interface describes how the logic layer stores the state of every
+ * cell on the board. Cells are addressed by a flat index (row * cols + col)
+ * so the logic layer can switch between the original one-object-per-cell
+ * layout and a packed primitive layout without touching any game rules.
+ * <p>The bit constants below describe the packed state of a single cell.
+ * The same byte is used by the packed layout for storage and can be
+ * produced by any layout through {@link #packedState(int)}.</p>
+ */
+public interface BoardStorage {
+
+    int BOOM = 0x01;
+    int FLAGGED = 0x02;
+    int HIDDEN = 0x04;
+    int COUNT_SHIFT = 4;
+    int COUNT_MASK = 0x0F;
+
+    /**
+     * The available storage layouts. OBJECTS is the original layout with a
+     * heap object per cell, PACKED keeps the whole board in a single byte
+     * array (one byte per cell) so boards with tens of millions of cells
+     * still fit in a small heap.
+     */
+    enum Layout {
+        OBJECTS,
+        PACKED;
+
+        /**
+         * Boards at or above this many cells default to the packed layout.
+         */
+        public static final int PACKED_THRESHOLD = 1 << 20;
+
+        /**
+         * Builds an empty board (every cell hidden, no booms) in this layout.
+         * @param rows number of rows
+         * @param cols number of cols
+         * @return the new storage
+         */
+        public BoardStorage create(int rows, int cols) {
+            if (this == PACKED) {
+                return new PackedBoard(rows, cols);
+            }
+            return new CellBoard(rows, cols);
+        }
+
+        /**
+         * Picks the default layout for a board of the given size. Small
+         * boards keep the object layout and large ones use the packed one.
+         * @param rows number of rows
+         * @param cols number of cols
+         * @return layout to use
+         */
+        public static Layout forSize(int rows, int cols) {
+            return (long) rows * cols >= PACKED_THRESHOLD ? PACKED : OBJECTS;
+        }
+    }
+
+    int rows();
+
+    int cols();
+
+    boolean hasBoom(int index);
+
+    void setBoom(int index, boolean hasBoom);
+
+    boolean isFlagged(int index);
+
+    void setFlagged(int index, boolean flagged);
+
+    boolean isHidden(int index);
+
+    void setHidden(int index, boolean hidden);
+
+    /**
+     * Number of booms touching the cell, or -1 when the cell is a boom.
+     * @param index flat cell index
+     * @return neighbor count
+     */
+    int getNeighboringBooms(int index);
+
+    void setNeighboringBooms(int index, int count);
+
+    /**
+     * Total number of cells on the board.
+     * @return rows * cols
+     */
+    default int size() {
+        return rows() * cols();
+    }
+
+    /**
+     * Packs the state of a cell into a single byte using the bit constants
+     * of this interface.
+     * @param index flat cell index
+     * @return packed cell state
+     */
+    default int packedState(int index) {
+        int state = 0;
+        if (hasBoom(index)) {
+            state |= BOOM;
+        } else {
+            state |= getNeighboringBooms(index) << COUNT_SHIFT;
+        }
+        if (isFlagged(index)) {
+            state |= FLAGGED;
+        }
+        if (isHidden(index)) {
+            state |= HIDDEN;
+        }
+        return state;
+    }
+
+    /**
+     * Sets every part of a cell's state from a byte packed by packedState.
+     * @param index flat cell index
+     * @param state packed cell state
+     */
+    default void setPackedState(int index, int state) {
+        boolean boom = (state & BOOM) != 0;
+        setBoom(index, boom);
+        setNeighboringBooms(index, boom ? -1 : (state >> COUNT_SHIFT) & COUNT_MASK);
+        setFlagged(index, (state & FLAGGED) != 0);
+        setHidden(index, (state & HIDDEN) != 0);
+    }
+
+    /**
+     * Checks that a board of the given size can be addressed with an int
+     * index.
+     * @param rows number of rows
+     * @param cols number of cols
+     * @return rows * cols
+     */
+    static int checkedSize(int rows, int cols) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException(
+                    "Board must have at least one cell: " + rows + "x" + cols);
+        }
+        long size = (long) rows * cols;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(
+                    "Board too large: " + rows + "x" + cols);
+        }
+        return (int) size;
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Read-only view of what a player can see on the board. It is implemented
+ * by BoomFieldLogic and handed to anything that needs to look at a game
+ * without being able to change it or peek at the hidden booms (move
+ * strategies for the batch runner, for example).
+ */
+public interface BoardView {
+
+    int getRows();
+
+    int getCols();
+
+    boolean isHidden(int row, int col);
+
+    boolean isFlagged(int row, int col);
+
+    /**
+     * Number shown on an uncovered safe cell.
+     * @param row row of cell
+     * @param col col of cell
+     * @return neighboring booms, or -1 if the cell is hidden or a boom
+     */
+    int getVisibleNumber(int row, int col);
+
+    int getNumberOfBooms();
+
+    int getFlagsUsed();
+
+    boolean isGameOver();
+
+    boolean isWon();
+}
@@ -1,5 +1,10 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
 
 /**
  * CS251 - Final Project
@@ -8,12 +13,57 @@ import java.awt.*;
  */
 public class BoomFieldFrame extends JFrame implements LogicToGUI {
 
-    private final int rows;
-    private final int cols;
+    /** Chunks an endless game keeps in memory, see EndlessBoomField. */
+    static final int ENDLESS_LIVE_CHUNKS = 64;
+    /** How far one arrow key press moves the endless window (rows even). */
+    static final int PAN_ROWS = 4;
+    static final int PAN_COLS = 4;
+
+    private int rows;
+    private int cols;
     private int booms;
     private final InfoPanel infoPanel;
-    private final BoardPanel boardPanel;
-    private BoomFieldLogic logic;
+    private BoardPanel boardPanel;
+    private JScrollPane boardScroller;
+    private final GameEngine engine;
+    private HexSolver solver;               // follows the board on the EDT
+    private NoGuessPool noGuessPool;        // started on first use
+    private final BoardPrefetcher prefetcher = new BoardPrefetcher();
+    private final JFileChooser saveChooser = new JFileChooser();
+    private final JCheckBoxMenuItem endlessItem =
+            new JCheckBoxMenuItem("Endless Mode");
+    private final JMenuItem undoItem = new JMenuItem("Undo");
+    private final JMenuItem saveItem = new JMenuItem("Save...");
+    private final JMenuItem loadItem = new JMenuItem("Load...");
+
+    // endless games only: which part of the field the board panel shows.
+    // view* is what is on screen, pan* is where the last pan asked to go
+    private boolean endlessShown = false;
+    private int viewRow;
+    private int viewCol;
+    private int panRow;
+    private int panCol;
+
+    /**
+     * Clicks on the board panel of an endless game, moved from the panel's
+     * cells to the part of the field it shows.
+     */
+    private final GUIToLogic endlessClicks = new GUIToLogic() {
+        @Override
+        public void uncoverSelectedCell(int row, int col) {
+            engine.uncoverSelectedCell(viewRow + row, viewCol + col);
+        }
+
+        @Override
+        public void toggleFlag(int row, int col) {
+            engine.toggleFlag(viewRow + row, viewCol + col);
+        }
+
+        @Override
+        public void chord(int row, int col) {
+            engine.chord(viewRow + row, viewCol + col);
+        }
+    };
 
     /**
      * This is the main constructor for the frame. It initializes all of our
@@ -39,8 +89,12 @@ public class BoomFieldFrame extends JFrame implements LogicToGUI {
 
         infoPanel.setMineCount(this.booms);
 
-        logic = new BoomFieldLogic(rows, cols, this.booms, this);
-        boardPanel.setLogic(logic);
+        // the game runs on the engine thread, the panel only sends it clicks
+        engine = new GameEngine(this);
+        solver = new HexSolver(rows, cols);
+        engine.replaceGame(journaledGame(rows, cols, this.booms));
+        prefetcher.prefetch(rows, cols, this.booms);
+        boardPanel.setLogic(engine);
 
         boardPanel.setFirstClickCallback(() -> infoPanel.startTimer());
 
@@ -49,22 +103,34 @@ public class BoomFieldFrame extends JFrame implements LogicToGUI {
                     startNewGame();
                 });
 
+        infoPanel.getHintButton().addActionListener(e -> {
+            SoundFX.CLICK.play();
+            showHint();
+        });
+
+        infoPanel.getNoGuessBox().addActionListener(e -> {
+            SoundFX.CLICK.play();
+            if (infoPanel.getNoGuessBox().isSelected()) {
+                noGuessPool();  // start checking boards before they are needed
+            }
+            prefetchNextBoard();
+        });
+
         infoPanel.getDifficultyBox().addActionListener(e -> {
             String diff = (String) infoPanel.getDifficultyBox().getSelectedItem();
             SoundFX.CLICK.play();
             this.booms = computeBoomsForDifficulty(diff);
-
+            prefetchNextBoard();
         });
 
-        setLayout(new BorderLayout());
-        add(infoPanel, BorderLayout.NORTH);
-        add(boardPanel, BorderLayout.CENTER);
-
         BackgroundPanel bg = new BackgroundPanel();
         bg.setLayout(new BorderLayout());
         bg.add(infoPanel, BorderLayout.NORTH);
-        bg.add(boardPanel, BorderLayout.CENTER);
+        boardScroller = createBoardScroller();
+        bg.add(boardScroller, BorderLayout.CENTER);
 
+        setJMenuBar(createMenuBar());
+        installPanKeys();
         setContentPane(bg);
         setTitle("BoomField - Watch Your Step!");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -75,6 +141,215 @@ public class BoomFieldFrame extends JFrame implements LogicToGUI {
 
     }
 
+    /**
+     * Wraps the board in a scroll pane so boards bigger than the window can
+     * still be played. The scroll pane and its viewport are see-through so
+     * the background art still shows behind the cells, and BoardPanel only
+     * paints the cells inside the visible part of the board.
+     * @return scroll pane holding the board
+     */
+    private JScrollPane createBoardScroller() {
+        JScrollPane scroller = new JScrollPane(boardPanel);
+        scroller.setOpaque(false);
+        scroller.getViewport().setOpaque(false);
+        scroller.setBorder(null);
+        scroller.getVerticalScrollBar().setUnitIncrement(BoardPanel.SCROLL_STEP);
+        scroller.getHorizontalScrollBar().setUnitIncrement(BoardPanel.SCROLL_STEP);
+        return scroller;
+    }
+
+    /**
+     * Builds the Game menu with the Undo, Save and Load actions.
+     * @return menu bar for the frame
+     */
+    private JMenuBar createMenuBar() {
+        undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z,
+                Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+        undoItem.addActionListener(e -> undoMove());
+        saveItem.addActionListener(e -> saveGame());
+        loadItem.addActionListener(e -> loadGame());
+        endlessItem.addActionListener(e -> {
+            SoundFX.CLICK.play();
+            startNewGame();
+        });
+
+        JMenu game = new JMenu("Game");
+        game.add(undoItem);
+        game.addSeparator();
+        game.add(saveItem);
+        game.add(loadItem);
+        game.addSeparator();
+        game.add(endlessItem);
+
+        JMenuBar bar = new JMenuBar();
+        bar.add(game);
+        return bar;
+    }
+
+    /**
+     * Lets the arrow keys move the window over an endless field. They do
+     * nothing in a normal game.
+     */
+    private void installPanKeys() {
+        int[][] keys = {
+                {KeyEvent.VK_UP, -PAN_ROWS, 0},
+                {KeyEvent.VK_DOWN, PAN_ROWS, 0},
+                {KeyEvent.VK_LEFT, 0, -PAN_COLS},
+                {KeyEvent.VK_RIGHT, 0, PAN_COLS},
+        };
+        InputMap inputs = getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+        ActionMap actions = getRootPane().getActionMap();
+        for (int[] key : keys) {
+            String name = "pan" + key[0];
+            inputs.put(KeyStroke.getKeyStroke(key[0], 0), name);
+            actions.put(name, new AbstractAction() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    panEndless(key[1], key[2]);
+                }
+            });
+        }
+    }
+
+    /**
+     * Moves the window over the endless field. The engine pushes the cells
+     * of the new window and the panel starts mapping clicks to it in the
+     * same batch of gui updates, so a click always lands on the cell that
+     * is drawn under it.
+     */
+    private void panEndless(int dRows, int dCols) {
+        if (!endlessShown) {
+            return;
+        }
+        panRow += dRows;
+        panCol += dCols;
+        int row = panRow;
+        int col = panCol;
+        engine.submitEndless(field -> {
+            engine.afterGuiUpdates(() -> {
+                viewRow = row;
+                viewCol = col;
+            });
+            field.touchViewport(row, col, row + rows - 1, col + cols - 1);
+        });
+    }
+
+    /**
+     * Takes back the last move. Undoing the move that ended the game puts
+     * the game back in play, so the timer picks up where it stopped.
+     */
+    private void undoMove() {
+        SoundFX.CLICK.play();
+        engine.submit(logic -> {
+            boolean wasOver = logic.isGameOver();
+            return logic.undo() && wasOver && !logic.isGameOver();
+        }).thenAccept(backInPlay -> {
+            if (backInPlay) {
+                engine.afterGuiUpdates(() -> infoPanel.startTimer());
+            }
+        });
+    }
+
+    /**
+     * Outlines a cell the solver can prove is safe, or else a boom that
+     * still needs a flag. If neither exists the player has to guess.
+     */
+    private void showHint() {
+        int safe = solver.nextSafeCell();
+        if (safe >= 0) {
+            boardPanel.showHint(safe / cols, safe % cols, true);
+            return;
+        }
+        int boom = solver.nextUnflaggedBoom();
+        if (boom >= 0) {
+            boardPanel.showHint(boom / cols, boom % cols, false);
+            return;
+        }
+        JOptionPane.showMessageDialog(this,
+                "No cell can be proven safe right now, time to trust your luck!",
+                "Hint", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /**
+     * Asks for a file and saves the current game to it.
+     */
+    private void saveGame() {
+        SoundFX.CLICK.play();
+        if (saveChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path path = saveChooser.getSelectedFile().toPath();
+        engine.submit(logic -> {
+            logic.save(path);
+            return null;
+        }).whenComplete((done, error) -> {
+            if (error != null) {
+                SwingUtilities.invokeLater(() ->
+                        JOptionPane.showMessageDialog(this,
+                                "Could not save the game: " + error.getMessage(),
+                                "Save Failed", JOptionPane.ERROR_MESSAGE));
+            }
+        });
+    }
+
+    /**
+     * Asks for a save file and continues the game stored in it. If the
+     * saved board has a different size, a new BoardPanel of that size is
+     * put in the scroll pane first. The timer starts over with the next
+     * click since the elapsed time is not part of the save file. The panels
+     * are only reset once the game has loaded, so if the file turns out to
+     * be broken the old game simply carries on.
+     */
+    private void loadGame() {
+        SoundFX.CLICK.play();
+        if (saveChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path path = saveChooser.getSelectedFile().toPath();
+        BoardFile.Header header;
+        try {
+            header = BoardFile.readHeader(path);
+        } catch (IOException e) {
+            showLoadError(e);
+            return;
+        }
+        boolean resize = header.getRows() != rows || header.getCols() != cols;
+
+        engine.replaceGame(listener -> {
+            BoomFieldLogic loaded = BoomFieldLogic.load(path, listener);
+            loaded.enableJournal();
+            return loaded;
+        }, () -> {
+            if (resize) {
+                replaceBoardPanel(header.getRows(), header.getCols());
+            }
+            infoPanel.resetTimer();
+            infoPanel.setMineCount(header.getBooms());
+            boardPanel.resetInteractionState();
+            solver = new HexSolver(rows, cols);
+        }).whenComplete((loaded, error) -> {
+            if (error != null) {
+                engine.afterGuiUpdates(() -> showLoadError(error));
+            }
+        });
+    }
+
+    private void showLoadError(Throwable error) {
+        JOptionPane.showMessageDialog(this,
+                "Could not load the game: " + error.getMessage(),
+                "Load Failed", JOptionPane.ERROR_MESSAGE);
+    }
+
+    private void replaceBoardPanel(int newRows, int newCols) {
+        rows = newRows;
+        cols = newCols;
+        boardPanel = new BoardPanel(rows, cols);
+        boardPanel.setLogic(engine);
+        boardPanel.setFirstClickCallback(() -> infoPanel.startTimer());
+        boardScroller.setViewportView(boardPanel);
+        boardScroller.revalidate();
+    }
+
     private int computeBoomsForDifficulty(String difficulty) {
         int totalCells = rows * cols;
 
@@ -113,10 +388,28 @@ public class BoomFieldFrame extends JFrame implements LogicToGUI {
                            boolean flagged,
                            boolean hidden,
                            int neighboringBooms) {
+        int state = (hasBoom ? BoardStorage.BOOM
+                : neighboringBooms << BoardStorage.COUNT_SHIFT)
+                | (flagged ? BoardStorage.FLAGGED : 0)
+                | (hidden ? BoardStorage.HIDDEN : 0);
+        solver.observe(row * cols + col, state);
         boardPanel.updateCellView(row, col, hasBoom, flagged, hidden,
                 neighboringBooms);
     }
 
+    /**
+     * Method used to apply every cell changed by a move in one go, so the
+     * board only repaints once per move.
+     * @param delta cells changed by the move
+     */
+    @Override
+    public void updateCells(BoardDelta delta) {
+        if (!endlessShown) {
+            solver.observe(delta);
+        }
+        boardPanel.applyDelta(delta);
+    }
+
     /**
      * This method displays our JOptionPane that comes up when the game is
      * over. It detects if the result was a win or loss and displays the
@@ -160,21 +453,164 @@ public class BoomFieldFrame extends JFrame implements LogicToGUI {
     /**
      * This is the method that controls subsequent new games. It sets a new
      * mine seed/count based on difficulty selected, updates the displayed
-     * mine count, resets the timer, and refreshes the logic and board.
+     * mine count, resets the timer, and refreshes the logic and board. The
+     * new board is generated on the engine thread, and the reset happens
+     * only once the old game's last updates are on screen.
      */
     public void startNewGame() {
-        infoPanel.resetTimer();
-        infoPanel.setMineCount(this.booms);
-        boardPanel.resetInteractionState();
+        if (endlessItem.isSelected()) {
+            startEndlessGame();
+            return;
+        }
+        int mineCount = this.booms;
 
         // Recalculate booms based on current difficulty selection
         String diff = (String) infoPanel.getDifficultyBox().getSelectedItem();
         this.booms = computeBoomsForDifficulty(diff);
 
-        // Rebuild logic and rewire
-        logic = new BoomFieldLogic(rows, cols, this.booms, this);
-        boardPanel.setLogic(logic);
-        boardPanel.refreshBoard();
+        // Rebuild logic on the engine, reset the panels in between games
+        GameEngine.GameFactory factory = null;
+        if (infoPanel.getNoGuessBox().isSelected()) {
+            factory = noGuessGame(noGuessPool(), this.booms);
+        }
+        if (factory == null) {
+            factory = prefetcher.take(rows, cols, this.booms);
+        }
+        if (factory == null) {
+            factory = journaledGame(rows, cols, this.booms);
+        }
+        engine.replaceGame(factory, () -> {
+            showEndless(false);
+            infoPanel.resetTimer();
+            infoPanel.setMineCount(mineCount);
+            boardPanel.resetInteractionState();
+            solver = new HexSolver(rows, cols);
+        });
+        prefetchNextBoard();
+    }
+
+    /**
+     * Starts an endless game (see EndlessBoomField) with the boom density of
+     * the selected difficulty. The board panel becomes a window onto the
+     * field, starting around the always safe cell (0, 0), and the arrow
+     * keys move it. Undo, save, load, hints and no guess boards only work
+     * on normal games, so they are switched off until one is started.
+     */
+    private void startEndlessGame() {
+        String diff = (String) infoPanel.getDifficultyBox().getSelectedItem();
+        this.booms = computeBoomsForDifficulty(diff);
+        double density = Math.max(EndlessBoomField.MIN_DENSITY,
+                (double) this.booms / (rows * cols));
+        long seed = new Random().nextLong();
+        int startRow = -(rows / 2) & ~1;    // must be even, see touchViewport
+        int startCol = -(cols / 2);
+        int windowRows = rows;
+        int windowCols = cols;
+
+        prefetcher.cancel();
+        engine.replaceWithEndless(listener -> {
+            EndlessBoomField field = new EndlessBoomField(seed, density,
+                    ENDLESS_LIVE_CHUNKS, listener);
+            field.touchViewport(startRow, startCol,
+                    startRow + windowRows - 1, startCol + windowCols - 1);
+            return field;
+        }, () -> {
+            showEndless(true);
+            viewRow = startRow;
+            viewCol = startCol;
+            panRow = startRow;
+            panCol = startCol;
+            infoPanel.resetTimer();
+            infoPanel.setBoomDensity(density);
+            infoPanel.setFlagLabel(0);
+            boardPanel.resetInteractionState();
+        });
+    }
+
+    /**
+     * Switches the panels between a normal and an endless game, on the EDT
+     * between the two games.
+     */
+    private void showEndless(boolean endless) {
+        endlessShown = endless;
+        boardPanel.setLogic(endless ? endlessClicks : engine, engine);
+        undoItem.setEnabled(!endless);
+        saveItem.setEnabled(!endless);
+        loadItem.setEnabled(!endless);
+        infoPanel.getHintButton().setEnabled(!endless);
+        infoPanel.getNoGuessBox().setEnabled(!endless);
+    }
+
+    /**
+     * Starts planting the board for the next game in the background, for
+     * the difficulty selected right now. No guess games come from their own
+     * pool and endless games plant as they go, so nothing is planted while
+     * either is picked.
+     */
+    private void prefetchNextBoard() {
+        if (infoPanel.getNoGuessBox().isSelected() || endlessItem.isSelected()) {
+            prefetcher.cancel();
+        } else {
+            prefetcher.prefetch(rows, cols, this.booms);
+        }
+    }
+
+    /**
+     * Factory for a new game with its move journal on, so it can be undone.
+     */
+    private static GameEngine.GameFactory journaledGame(int rows, int cols,
+                                                        int booms) {
+        return listener -> {
+            BoomFieldLogic game = new BoomFieldLogic(rows, cols, booms, listener);
+            game.enableJournal();
+            return game;
+        };
+    }
+
+    /**
+     * Factory for a no guess game. The board comes from the pool with its
+     * start cell already open, and the journal is turned on afterwards so
+     * that opening cannot be undone.
+     * @return the factory, or null if the pool has no board ready yet, in
+     * which case a normal game is dealt instead of checking boards on the
+     * engine thread
+     */
+    private static GameEngine.GameFactory noGuessGame(NoGuessPool pool,
+                                                      int booms) {
+        NoGuessPool.Board board = pool.take(booms);
+        if (board == null) {
+            DebugLog.info(() -> "No guess board for " + booms
+                    + " booms not ready, dealing a normal board");
+            return null;
+        }
+        return listener -> {
+            BoomFieldLogic game = board.newGame(listener);
+            game.enableJournal();
+            return game;
+        };
+    }
+
+    /**
+     * The pool of no guess boards for the current board size, started the
+     * first time it is needed and started over if a loaded game changed
+     * the size.
+     * @return pool for the current size
+     */
+    private NoGuessPool noGuessPool() {
+        if (noGuessPool != null && (noGuessPool.getRows() != rows
+                || noGuessPool.getCols() != cols)) {
+            noGuessPool.shutdown();
+            noGuessPool = null;
+        }
+        if (noGuessPool == null) {
+            int[] boomCounts = {
+                    computeBoomsForDifficulty("Easy"),
+                    computeBoomsForDifficulty("Medium"),
+                    computeBoomsForDifficulty("Hard")
+            };
+            noGuessPool = new NoGuessPool(rows, cols, boomCounts);
+        }
+        return noGuessPool;
     }
 
 
@@ -0,0 +1,298 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class puts load on a BoomFieldServer: it opens many sessions at
+ * once, each playing random games as fast as the server answers, and then
+ * reports the moves per second and the move latency percentiles. Every
+ * session runs on its own thread (virtual where available, see
+ * BoomFieldServer.connectionExecutor) and keeps its own latency histogram,
+ * so sessions never contend with each other while measuring.
+ * <p>Usage: java BoomFieldLoadClient [sessions] [seconds] [rows] [cols]
+ * [booms] [port]</p>
+ */
+public class BoomFieldLoadClient {
+
+    private final int sessions;
+    private final int rows;
+    private final int cols;
+    private final int booms;
+    private final int port;
+
+    /**
+     * Move latencies in microseconds, in buckets that are exact below 32us
+     * and then keep 32 buckets per power of two (about 3% error), so each
+     * session's histogram is a few KB and records without allocating.
+     * Anything slower than MAX_MICROS (about 18 minutes) is counted there.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BITS = 5;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private static final long MAX_MICROS = (1L << 30) - 1;
+        private final int[] counts =
+                new int[(30 - SUB_BITS + 1) * SUB_COUNT];
+        private long total = 0;
+
+        void record(long micros) {
+            counts[bucketOf(Math.min(MAX_MICROS, Math.max(0, micros)))]++;
+            total++;
+        }
+
+        void add(LatencyHistogram other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            total += other.total;
+        }
+
+        long total() {
+            return total;
+        }
+
+        /**
+         * Latency at a percentile.
+         * @param percentile from 0 to 100
+         * @return upper bound of the bucket holding it, in microseconds
+         */
+        long percentile(double percentile) {
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return upperBound(i);
+                }
+            }
+            return 0;
+        }
+
+        private static int bucketOf(long micros) {
+            if (micros < SUB_COUNT) {
+                return (int) micros;
+            }
+            // shift so the top SUB_BITS + 1 bits are left, then drop the top one
+            int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BITS;
+            int sub = (int) (micros >>> shift) - SUB_COUNT;
+            return SUB_COUNT + shift * SUB_COUNT + sub;
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < SUB_COUNT) {
+                return bucket;
+            }
+            int shift = (bucket - SUB_COUNT) / SUB_COUNT;
+            int sub = (bucket - SUB_COUNT) % SUB_COUNT;
+            return ((long) (SUB_COUNT + sub + 1) << shift) - 1;
+        }
+    }
+
+    /**
+     * Builds a client for a board size.
+     * @param sessions number of concurrent sessions
+     * @param rows rows per board
+     * @param cols cols per board
+     * @param booms booms per board
+     * @param port server port on localhost
+     */
+    public BoomFieldLoadClient(int sessions, int rows, int cols, int booms,
+                               int port) {
+        this.sessions = sessions;
+        this.rows = rows;
+        this.cols = cols;
+        this.booms = booms;
+        this.port = port;
+    }
+
+    /**
+     * Opens every session, lets them play for the given time and prints
+     * the report.
+     * @param seconds how long to play once all sessions are connected
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void run(int seconds) throws InterruptedException {
+        ExecutorService threads =
+                BoomFieldServer.connectionExecutor("boomfield-load");
+        CountDownLatch connected = new CountDownLatch(sessions);
+        CountDownLatch finished = new CountDownLatch(sessions);
+        AtomicLong failures = new AtomicLong();
+        List<LatencyHistogram> histograms = new ArrayList<>();
+        long[] games = new long[sessions];
+        long[] deadline = new long[1];
+        Object start = new Object();
+
+        for (int s = 0; s < sessions; s++) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histograms.add(histogram);
+            int session = s;
+            threads.execute(() -> {
+                Socket socket = null;
+                try {
+                    socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                }
+                connected.countDown();
+                try {
+                    if (socket != null) {
+                        games[session] = play(socket, session, histogram,
+                                start, deadline);
+                    }
+                } catch (IOException | InterruptedException e) {
+                    failures.incrementAndGet();
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+
+        connected.await();
+        long connectFailures = failures.get();
+        System.out.println(sessions - connectFailures + " sessions connected");
+        long began = System.nanoTime();
+        synchronized (start) {
+            deadline[0] = began + seconds * 1_000_000_000L;
+            start.notifyAll();
+        }
+        finished.await();
+        long elapsed = System.nanoTime() - began;
+        threads.shutdown();
+
+        LatencyHistogram all = new LatencyHistogram();
+        for (LatencyHistogram histogram : histograms) {
+            all.add(histogram);
+        }
+        long played = 0;
+        for (long g : games) {
+            played += g;
+        }
+        System.out.printf("%,d moves in %.2f s: %,.0f moves/s, %,d games, "
+                        + "%d failed sessions%n",
+                all.total(), elapsed / 1e9, all.total() / (elapsed / 1e9),
+                played, failures.get());
+        System.out.printf("latency p50 %d us, p99 %d us, p99.9 %d us, max %d us%n",
+                all.percentile(50), all.percentile(99), all.percentile(99.9),
+                all.percentile(100));
+    }
+
+    /**
+     * Plays random games on one session until the deadline.
+     * @return number of games started
+     */
+    private long play(Socket connection, int session, LatencyHistogram histogram,
+                      Object start, long[] deadline)
+            throws IOException, InterruptedException {
+        SplittableRandom random = new SplittableRandom(session);
+        byte[] states = new byte[rows * cols];
+
+        try (Socket socket = connection;
+             BufferedReader in = new BufferedReader(new InputStreamReader(
+                     socket.getInputStream(), StandardCharsets.US_ASCII));
+             Writer out = new BufferedWriter(new OutputStreamWriter(
+                     socket.getOutputStream(), StandardCharsets.US_ASCII))) {
+            socket.setTcpNoDelay(true);
+            long end;
+            synchronized (start) {
+                while (deadline[0] == 0) {
+                    start.wait();
+                }
+                end = deadline[0];
+            }
+
+            long games = 0;
+            boolean playing = false;
+            while (System.nanoTime() < end) {
+                if (!playing) {
+                    send(out, "NEW " + rows + " " + cols + " " + booms + " "
+                            + random.nextLong());
+                    expect(in.readLine(), "GAME");
+                    Arrays.fill(states, (byte) BoardStorage.HIDDEN);
+                    playing = true;
+                    games++;
+                }
+
+                int index = pickHiddenCell(states, random);
+                boolean flag = random.nextInt(8) == 0;
+                String command = (flag ? "FLAG " : "OPEN ")
+                        + index / cols + " " + index % cols;
+                long sent = System.nanoTime();
+                send(out, command);
+                String reply = in.readLine();
+                histogram.record((System.nanoTime() - sent) / 1000);
+                playing = applyReply(expect(reply, "OK"), states);
+            }
+            send(out, "QUIT");
+            return games;
+        }
+    }
+
+    private static void send(Writer out, String line) throws IOException {
+        out.write(line);
+        out.write('\n');
+        out.flush();
+    }
+
+    private static String expect(String reply, String prefix) throws IOException {
+        if (reply == null || !reply.startsWith(prefix)) {
+            throw new IOException("Unexpected reply: " + reply);
+        }
+        return reply;
+    }
+
+    /**
+     * Updates the session's view of the board from a move reply.
+     * @return true while the game is still being played
+     */
+    private static boolean applyReply(String reply, byte[] states) {
+        String[] words = reply.split(" ");
+        for (int i = 4; i < words.length; i++) {
+            int colon = words[i].indexOf(':');
+            int index = Integer.parseInt(words[i], 0, colon, 10);
+            states[index] = (byte) Integer.parseInt(words[i], colon + 1,
+                    words[i].length(), 10);
+        }
+        return "PLAYING".equals(words[2]);
+    }
+
+    private static int pickHiddenCell(byte[] states, SplittableRandom random) {
+        int index = random.nextInt(states.length);
+        for (int tries = 0; tries < states.length; tries++) {
+            int state = states[index];
+            if ((state & BoardStorage.HIDDEN) != 0
+                    && (state & BoardStorage.FLAGGED) == 0) {
+                return index;
+            }
+            index = index + 1 == states.length ? 0 : index + 1;
+        }
+        return index;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int rows = args.length > 2 ? Integer.parseInt(args[2]) : 15;
+        int cols = args.length > 3 ? Integer.parseInt(args[3]) : 15;
+        int booms = args.length > 4 ? Integer.parseInt(args[4]) : 27;
+        int port = args.length > 5 ? Integer.parseInt(args[5])
+                : BoomFieldServer.DEFAULT_PORT;
+
+        System.out.println("Load test: " + sessions + " sessions, " + rows
+                + "x" + cols + " boards with " + booms + " booms, "
+                + seconds + " s");
+        new BoomFieldLoadClient(sessions, rows, cols, booms, port).run(seconds);
+    }
+}
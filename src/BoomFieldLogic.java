@@ -1,3 +1,5 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Random;
 
 
@@ -9,49 +11,373 @@ import java.util.Random;
  * between the logic and gui layers. I have several sanity checks dropped
  * throughout my logic layer that print things like the updated board
  * representation and number of flags used to help me verify that what is
- * being displayed on the running gui match the internal logic.</p>
+ * being displayed on the running gui match the internal logic. They go
+ * through DebugLog now, so they only print when asked for
+ * (-Dboomfield.log=debug for the flags, trace for the board too). Moves
+ * and board generation are also recorded as GameEvents for Flight
+ * Recorder.</p>
  */
-public class BoomFieldLogic implements GUIToLogic {
+public class BoomFieldLogic implements GUIToLogic, BoardView {
 
     private final int ROWS;
     private final int COLS;
-    private final Cell[][] BOARD;
+    private final BoardStorage BOARD;
     private final int numberOfBooms;
     private int flagsUsed = 0;
-    private final Random boomRandomizer;
+    private final long seed;
     private boolean gameOver = false;
+    private boolean won = false;
+    private boolean consoleOutput = true;   // sanity check prints
+
+    // running totals so the win check never has to scan the whole board
+    private int hiddenSafeCells;
+    private int boomsFlagged = 0;
+    private int wrongFlags = 0;
+
+    /**
+     * Turns on the full-board scan that double checks the running win
+     * counters after every move (-Dboomfield.debugChecks=true).
+     */
+    private static final boolean DEBUG_CHECKS =
+            Boolean.getBoolean("boomfield.debugChecks");
 
     private final LogicToGUI infoForGUI;   // callback into GUI
 
-    private static class Cell {
-        boolean hasBoom;
-        boolean flagged;
-        boolean hidden = true;
-        int neighboringBooms = 0;
-    }
+    // scratch space for the flood fill, reused between moves
+    private final IntQueue floodQueue = new IntQueue(64);
+    private final int[] neighborBuffer = new int[6];
+
+    // cells changed by the current move, sent to the gui in one batch
+    private final BoardDelta pendingChanges;
+
+    // record of the moves for replay and undo, null until enableJournal
+    private MoveJournal journal;
 
     /**
-     * This is our main logic constructor. It builds the board with a 2D
-     * array of Cells and initializes the board state by planting the
-     * specified number of "booms" using random seeds and provides the info
-     * for the gui.
+     * This is our main logic constructor. It builds the board and
+     * initializes the board state by planting the specified number of
+     * "booms" using random seeds and provides the info for the gui. The
+     * storage layout is picked from the board size (see
+     * BoardStorage.Layout.forSize).
      * @param rows number of horizontal cells
      * @param cols number of vertical cells
      * @param booms number of mines to be planted
      * @param infoForGUI information for the gui
      */
     public BoomFieldLogic(int rows, int cols, int booms, LogicToGUI infoForGUI){
-        this.ROWS = rows;
-        this.COLS = cols;
-        this.BOARD = new Cell[rows][cols];
+        this(rows, cols, booms, infoForGUI,
+                BoardStorage.Layout.forSize(rows, cols));
+    }
+
+    /**
+     * Same as the main constructor but lets the caller pick how the board
+     * is stored. OBJECTS keeps a Cell object per tile while PACKED keeps
+     * the whole board in one byte array for very large boards.
+     * @param rows number of horizontal cells
+     * @param cols number of vertical cells
+     * @param booms number of mines to be planted
+     * @param infoForGUI information for the gui
+     * @param layout storage layout for the board
+     */
+    public BoomFieldLogic(int rows, int cols, int booms, LogicToGUI infoForGUI,
+                          BoardStorage.Layout layout) {
+        this(rows, cols, booms, infoForGUI, layout, new Random().nextLong());
+    }
+
+    /**
+     * Same as the layout constructor but plants the booms from a fixed seed,
+     * so the same seed always gives the same board (used for simulations,
+     * replays and benchmarks).
+     * @param rows number of horizontal cells
+     * @param cols number of vertical cells
+     * @param booms number of mines to be planted
+     * @param infoForGUI information for the gui
+     * @param layout storage layout for the board
+     * @param seed seed for the boom placement
+     */
+    public BoomFieldLogic(int rows, int cols, int booms, LogicToGUI infoForGUI,
+                          BoardStorage.Layout layout, long seed) {
+        this(generate(layout, rows, cols, booms, seed), booms, seed,
+                infoForGUI);
+    }
+
+    /**
+     * Starts a game on a board that generate already planted, so the
+     * planting and counting can happen ahead of time on another thread
+     * (see BoardPrefetcher). The board must be fresh from generate with
+     * the same booms and seed.
+     * @param generated board from generate, not played yet
+     * @param booms number of booms planted on it
+     * @param seed seed it was planted from
+     * @param infoForGUI information for the gui
+     */
+    BoomFieldLogic(BoardStorage generated, int booms, long seed,
+                   LogicToGUI infoForGUI) {
+        this.ROWS = generated.rows();
+        this.COLS = generated.cols();
+        this.BOARD = generated;
         this.numberOfBooms = booms;
-        this.boomRandomizer = new Random();
+        this.seed = seed;
+        this.infoForGUI = infoForGUI;
+        this.pendingChanges = new BoardDelta(COLS, 64);
+
+        hiddenSafeCells = BOARD.size() - numberOfBooms;
+        pushFullBoardState();
+    }
+
+    /**
+     * Builds a new board and plants it, without starting a game on it.
+     * @param layout storage layout for the board
+     * @param rows number of horizontal cells
+     * @param cols number of vertical cells
+     * @param booms number of mines to be planted
+     * @param seed seed for the boom placement
+     * @return the planted board with its neighbor counts
+     */
+    static BoardStorage generate(BoardStorage.Layout layout, int rows,
+                                 int cols, int booms, long seed) {
+        BoardStorage board = layout.create(rows, cols);
+        if (booms < 0 || booms > board.size()) {
+            throw new IllegalArgumentException(
+                    "Cannot plant " + booms + " booms on " + rows + "x" + cols);
+        }
+        generateBoard(board, booms, seed);
+        return board;
+    }
+
+    /**
+     * Rebuilds a game from a board that is already played (a loaded save
+     * file or a journal snapshot). The board is used as is and the win
+     * counters and flags come from the header, so nothing is regenerated
+     * or rescanned (apart from the debug checks).
+     */
+    private BoomFieldLogic(BoardStorage board, BoardFile.Header header,
+                           LogicToGUI infoForGUI) {
+        this.ROWS = board.rows();
+        this.COLS = board.cols();
+        this.BOARD = board;
+        this.numberOfBooms = header.booms;
+        this.seed = header.seed;
         this.infoForGUI = infoForGUI;
+        this.pendingChanges = new BoardDelta(COLS, 64);
+
+        this.flagsUsed = header.flagsUsed;
+        this.hiddenSafeCells = header.hiddenSafeCells;
+        this.boomsFlagged = header.boomsFlagged;
+        this.wrongFlags = header.wrongFlags;
+        this.gameOver = header.gameOver;
+        this.won = header.won;
+        if (DEBUG_CHECKS) {
+            verifyWinCounters();
+        }
 
-        initializeBoard();
-        plantBooms();
-        countNearbyBooms();
         pushFullBoardState();
+        infoForGUI.updateFlagsUsed(flagsUsed);
+    }
+
+    /**
+     * Loads a game saved with save(). The file is memory mapped and its
+     * planes are used directly as the board (see MappedBoard), so loading
+     * does not copy the board into the heap.
+     * @param path save file
+     * @param infoForGUI information for the gui
+     * @return the loaded game
+     * @throws IOException if the file cannot be read or is not a save file
+     */
+    public static BoomFieldLogic load(Path path, LogicToGUI infoForGUI)
+            throws IOException {
+        MappedBoard board = BoardFile.read(path);
+        return new BoomFieldLogic(board, board.header(), infoForGUI);
+    }
+
+    /**
+     * Rebuilds a journaled game as it was after a number of events. It
+     * starts from the journal's nearest usable snapshot and plays the
+     * remaining moves on top of it, rather than replaying from move zero.
+     * The rebuilt game has no journal of its own.
+     * @param journal journal of the game
+     * @param events number of events (moves and undos) to replay
+     * @param listener receives the rebuilt game's callbacks
+     * @return the rebuilt game
+     */
+    public static BoomFieldLogic replay(MoveJournal journal, int events,
+                                        LogicToGUI listener) {
+        MoveJournal.ReplayPlan plan = journal.planReplay(events);
+        BoardFile.Header header = plan.snapshot.header;
+        BoomFieldLogic logic = new BoomFieldLogic(journal.restoreBoard(plan),
+                header, listener);
+        logic.setConsoleOutput(false);
+
+        for (int m = 0; m < plan.ops.length; m++) {
+            int row = plan.indices[m] / logic.COLS;
+            int col = plan.indices[m] % logic.COLS;
+            if (plan.ops[m] == MoveJournal.FLAG) {
+                logic.toggleFlag(row, col);
+            } else if (plan.ops[m] == MoveJournal.CHORD) {
+                logic.chord(row, col);
+            } else {
+                logic.uncoverSelectedCell(row, col);
+            }
+        }
+        return logic;
+    }
+
+    /**
+     * Starts recording every move of this game in a MoveJournal, which is
+     * what undo and replay work from. Games without a journal (like the
+     * headless ones) skip the bookkeeping.
+     * @return the journal, started from the current board
+     */
+    public MoveJournal enableJournal() {
+        if (journal == null) {
+            journal = new MoveJournal(BOARD, currentHeader());
+        }
+        return journal;
+    }
+
+    /**
+     * The journal of this game.
+     * @return the journal, or null if enableJournal was never called
+     */
+    public MoveJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Takes back the last move that has not been undone yet (this also
+     * takes back a losing move). Only the cells that move changed are
+     * restored, along with the flag and win counters from before it.
+     * @return true if a move was undone, false if there was nothing to undo
+     */
+    public boolean undo() {
+        if (journal == null) {
+            return false;
+        }
+        int op = journal.beginUndo();
+        if (op < 0) {
+            return false;
+        }
+
+        int cells = journal.undoCellCount();
+        for (int i = 0; i < cells; i++) {
+            int index = journal.undoCell(i);
+            if (op == MoveJournal.FLAG) {
+                BOARD.setFlagged(index, !BOARD.isFlagged(index));
+            } else {
+                BOARD.setHidden(index, true);
+            }
+            pushCellState(index);
+        }
+
+        BoardFile.Header before = journal.endUndo();
+        flagsUsed = before.flagsUsed;
+        hiddenSafeCells = before.hiddenSafeCells;
+        boomsFlagged = before.boomsFlagged;
+        wrongFlags = before.wrongFlags;
+        gameOver = before.gameOver;
+        won = before.won;
+        if (DEBUG_CHECKS) {
+            verifyWinCounters();
+        }
+
+        flushCellChanges();
+        infoForGUI.updateFlagsUsed(flagsUsed);
+        infoForGUI.refreshBoard();
+        return true;
+    }
+
+    /**
+     * Saves the whole game (board, flags, counters and seed) to a binary
+     * board file, see BoardFile for the format.
+     * @param path file to write, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path path) throws IOException {
+        BoardFile.write(path, BOARD, currentHeader());
+    }
+
+    private BoardFile.Header currentHeader() {
+        return new BoardFile.Header(ROWS, COLS, numberOfBooms, seed,
+                flagsUsed, hiddenSafeCells, boomsFlagged, wrongFlags,
+                gameOver, won);
+    }
+
+    /**
+     * Plants the booms and counts the neighbors of an empty board. Boards
+     * of PARALLEL_THRESHOLD cells or more are generated in parallel row
+     * bands by ParallelBoardGenerator; smaller ones (like the gui's 15x15)
+     * are not worth the hand-off and are generated right here. The choice
+     * only depends on the board size, so a seed always gives the same
+     * board whatever machine it runs on.
+     * @param board empty board
+     * @param booms number of booms to plant
+     * @param seed seed for the boom placement
+     */
+    static void generateBoard(BoardStorage board, int booms, long seed) {
+        if (board.size() >= ParallelBoardGenerator.PARALLEL_THRESHOLD) {
+            ParallelBoardGenerator.generate(board, booms, seed);
+        } else {
+            GameEvents.Generation plant = new GameEvents.Generation();
+            plant.begin();
+            plantBooms(board, booms, new Random(seed));
+            commitGeneration(plant, "plant", board, booms, false);
+
+            GameEvents.Generation count = new GameEvents.Generation();
+            count.begin();
+            countNearbyBooms(board);
+            commitGeneration(count, "count", board, booms, false);
+        }
+    }
+
+    /**
+     * Fills in and records a board generation phase's Flight Recorder
+     * event, if a recording wants it.
+     * @param event event begun when the phase started
+     * @param phase name of the phase
+     * @param board board being generated
+     * @param booms booms planted on it
+     * @param parallel true if the phase ran on all cores
+     */
+    static void commitGeneration(GameEvents.Generation event, String phase,
+                                 BoardStorage board, int booms,
+                                 boolean parallel) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.cells = board.size();
+            event.booms = booms;
+            event.parallel = parallel;
+            event.commit();
+        }
+    }
+
+    /**
+     * Builds a game with no gui attached, for bulk simulations. It uses the
+     * packed layout, a fixed seed, and has the console sanity checks turned
+     * off.
+     * @param rows number of horizontal cells
+     * @param cols number of vertical cells
+     * @param booms number of mines to be planted
+     * @param seed seed for the boom placement
+     * @param listener receives the game's callbacks (see CountingListener)
+     * @return the new headless game
+     */
+    public static BoomFieldLogic headless(int rows, int cols, int booms,
+                                          long seed, LogicToGUI listener) {
+        BoomFieldLogic logic = new BoomFieldLogic(rows, cols, booms, listener,
+                BoardStorage.Layout.PACKED, seed);
+        logic.setConsoleOutput(false);
+        return logic;
+    }
+
+    /**
+     * Turns the console sanity checks (flag count and board printout after
+     * every move) on or off. Even when on they only print if DebugLog's
+     * level asks for them.
+     * @param enabled true to print the sanity checks
+     */
+    public void setConsoleOutput(boolean enabled) {
+        this.consoleOutput = enabled;
     }
 
     /**
@@ -70,25 +396,35 @@ public class BoomFieldLogic implements GUIToLogic {
         if (gameOver) {
             return;
         }
-        Cell cell = BOARD[row][col];
+        int index = indexOf(row, col);
 
-        if (!cell.hidden) {
+        if (!BOARD.isHidden(index)) {
             return;
         }
-
-        cell.flagged = !cell.flagged;
-        if (cell.flagged) {
-            flagsUsed++;
+        GameEvents.Move event = new GameEvents.Move();
+        event.begin();
+        beginJournalMove(MoveJournal.FLAG, index);
+
+        boolean flagged = !BOARD.isFlagged(index);
+        BOARD.setFlagged(index, flagged);
+        int change = flagged ? 1 : -1;
+        flagsUsed += change;
+        if (BOARD.hasBoom(index)) {
+            boomsFlagged += change;
+        } else {
+            wrongFlags += change;
         }
-        if (!cell.flagged) {
-            flagsUsed--;
+        if (consoleOutput) {
+            DebugLog.debug(() -> "Flags used: " + flagsUsed); // sanity check
         }
-        System.out.println("Flags used: " + flagsUsed); // sanity check
 
-        pushCellState(row, col);
+        pushCellState(index);
+        flushCellChanges();
         infoForGUI.updateFlagsUsed(flagsUsed);
 
         checkWinCondition();
+        endJournalMove();
+        commitMove(event, "flag", index, hiddenSafeCells);
     }
 
 
@@ -109,161 +445,388 @@ public class BoomFieldLogic implements GUIToLogic {
             return;
         }
 
-        Cell cell = BOARD[row][col];
+        int index = indexOf(row, col);
 
-        if (!cell.hidden || cell.flagged) {
+        if (!BOARD.isHidden(index) || BOARD.isFlagged(index)) {
             return;
         }
+        GameEvents.Move event = new GameEvents.Move();
+        event.begin();
+        int hiddenBefore = hiddenSafeCells;
+        beginJournalMove(MoveJournal.UNCOVER, index);
 
-        if (cell.hasBoom) {
+        if (BOARD.hasBoom(index)) {
             revealBoomsUponBoom();
+            flushCellChanges();
             gameOver = true;
             infoForGUI.showGameOver(false);
             infoForGUI.refreshBoard();
         } else {
             floodFillUncover(row, col);
+            flushCellChanges();
             checkWinCondition();
         }
+        endJournalMove();
+        commitMove(event, "uncover", index, hiddenBefore);
 
-        System.out.println(this);
+        if (consoleOutput) {
+            DebugLog.trace(this::toString);
+        }
     }
 
 
 
-    private void initializeBoard() {
-        for (int r = 0; r < ROWS; r++) {
-            for (int c = 0; c < COLS; c++) {
-                BOARD[r][c] = new Cell();
+    /**
+     * Chords on an uncovered number whose flags are all placed: every
+     * unflagged hidden neighbor is uncovered as a single move. All of them
+     * go on the flood queue together, so there is one flood fill, one win
+     * check, one delta for the gui and one journal entry (undone in one
+     * step). If a flag was wrong one of those neighbors is a boom and the
+     * game is lost, just like clicking it.
+     * @param row row of the number
+     * @param col col of the number
+     */
+    @Override
+    public void chord(int row, int col) {
+        if (gameOver) {
+            return;
+        }
+        int index = indexOf(row, col);
+        if (BOARD.isHidden(index) || BOARD.hasBoom(index)) {
+            return;
+        }
+
+        int count = HexGrid.neighbors(index, ROWS, COLS, neighborBuffer);
+        int flags = 0;
+        int targets = 0;
+        boolean hitsBoom = false;
+        for (int k = 0; k < count; k++) {
+            int neighbor = neighborBuffer[k];
+            if (!BOARD.isHidden(neighbor)) {
+                continue;
+            }
+            if (BOARD.isFlagged(neighbor)) {
+                flags++;
+            } else {
+                targets++;
+                hitsBoom |= BOARD.hasBoom(neighbor);
             }
         }
+        if (flags != BOARD.getNeighboringBooms(index) || targets == 0) {
+            return;
+        }
+        GameEvents.Move event = new GameEvents.Move();
+        event.begin();
+        int hiddenBefore = hiddenSafeCells;
+        beginJournalMove(MoveJournal.CHORD, index);
+
+        if (hitsBoom) {
+            revealBoomsUponBoom();
+            flushCellChanges();
+            gameOver = true;
+            infoForGUI.showGameOver(false);
+            infoForGUI.refreshBoard();
+        } else {
+            floodQueue.clear();
+            for (int k = 0; k < count; k++) {
+                int neighbor = neighborBuffer[k];
+                if (canFloodInto(neighbor)) {
+                    uncoverForFlood(neighbor);
+                }
+            }
+            drainFlood();
+            flushCellChanges();
+            checkWinCondition();
+        }
+        endJournalMove();
+        commitMove(event, "chord", index, hiddenBefore);
+
+        if (consoleOutput) {
+            DebugLog.trace(this::toString);
+        }
     }
 
-    private void plantBooms() {
-        int plantedBooms = 0;
-        while (plantedBooms < numberOfBooms) {
-            int row = boomRandomizer.nextInt(ROWS);
-            int col = boomRandomizer.nextInt(COLS);
+    /**
+     * Fills in and records a move's Flight Recorder event, if a recording
+     * wants it.
+     * @param event event begun when the move started
+     * @param op name of the move
+     * @param index cell the move was made on
+     * @param hiddenBefore hidden safe cells before the move
+     */
+    private void commitMove(GameEvents.Move event, String op, int index,
+                            int hiddenBefore) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.op = op;
+            event.row = index / COLS;
+            event.col = index % COLS;
+            event.cellsRevealed = hiddenBefore - hiddenSafeCells;
+            event.gameOver = gameOver;
+            event.commit();
+        }
+    }
 
-            if (!BOARD[row][col].hasBoom) {
-                BOARD[row][col].hasBoom = true;
-                plantedBooms++;
+    /**
+     * Plants booms on an empty board using Floyd's sampling algorithm. The
+     * old version kept drawing random cells until it hit an empty one,
+     * which gets very slow as the board fills up. Floyd's algorithm makes
+     * exactly one random draw per boom at any density: for each of the
+     * last "booms" cell indices j it draws a cell from [0, j] and plants
+     * there, or on j itself if that cell already has a boom. The board
+     * itself serves as the set of chosen cells, so no extra memory is
+     * needed, every layout is equally likely, and the same seed always
+     * gives the same layout. This and countNearbyBooms work on a bare
+     * BoardStorage (rather than this game's board) so the board generation
+     * steps can be run and benchmarked on their own.
+     * @param board empty board to plant on
+     * @param booms number of booms to plant
+     * @param boomRandomizer random source for the placement
+     */
+    static void plantBooms(BoardStorage board, int booms,
+                           Random boomRandomizer) {
+        int size = board.size();
+        for (int j = size - booms; j < size; j++) {
+            int index = boomRandomizer.nextInt(j + 1);
+            if (board.hasBoom(index)) {
+                index = j;
             }
+            board.setBoom(index, true);
+        }
+    }
+
+    @Override
+    public int getRows() {
+        return ROWS;
+    }
+
+    @Override
+    public int getCols() {
+        return COLS;
+    }
+
+    @Override
+    public boolean isHidden(int row, int col) {
+        return BOARD.isHidden(indexOf(row, col));
+    }
+
+    @Override
+    public boolean isFlagged(int row, int col) {
+        return BOARD.isFlagged(indexOf(row, col));
+    }
+
+    @Override
+    public int getVisibleNumber(int row, int col) {
+        int index = indexOf(row, col);
+        if (BOARD.isHidden(index) || BOARD.hasBoom(index)) {
+            return -1;
         }
+        return BOARD.getNeighboringBooms(index);
+    }
+
+    @Override
+    public int getNumberOfBooms() {
+        return numberOfBooms;
+    }
+
+    @Override
+    public int getFlagsUsed() {
+        return flagsUsed;
+    }
+
+    @Override
+    public boolean isGameOver() {
+        return gameOver;
     }
 
-    private boolean inBounds(int row, int col) {
-        return row >= 0 && row < ROWS && col >= 0 && col < COLS;
+    @Override
+    public boolean isWon() {
+        return won;
     }
 
+    /**
+     * Seed the booms were planted from, which is enough to rebuild the
+     * starting board.
+     * @return boom seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Number of safe cells uncovered so far.
+     * @return cells revealed
+     */
+    public int getCellsRevealed() {
+        return BOARD.size() - numberOfBooms - hiddenSafeCells;
+    }
+
+    private int indexOf(int row, int col) {
+        return row * COLS + col;
+    }
 
 
+
+    /**
+     * The game is won once every boom is flagged and every other cell is
+     * uncovered. Instead of scanning the board this reads the running
+     * counters kept by toggleFlag and the flood fill, so it costs the same
+     * on any board size. With debug checks on it still does the old full
+     * scan to make sure the counters have not drifted.
+     */
     private void checkWinCondition() {
         if (gameOver) {
             return;
         }
+        if (DEBUG_CHECKS) {
+            verifyWinCounters();
+        }
 
-        for (int r = 0; r < ROWS; r++) {
-            for (int c = 0; c < COLS; c++) {
-                Cell checkedCell = BOARD[r][c];
-
-                if (checkedCell.hasBoom) {
-                    // All booms must be flagged
-                    if (!checkedCell.flagged) {
-                        return;
-                    }
-                } else {
-                    // All non-booms must be uncovered
-                    if (checkedCell.hidden) {
-                        return;
-                    }
-                }
-            }
+        if (hiddenSafeCells != 0 || wrongFlags != 0
+                || boomsFlagged != numberOfBooms) {
+            return;
         }
         gameOver = true;
+        won = true;
         infoForGUI.showGameOver(true);
         infoForGUI.refreshBoard();
     }
 
-    private int[][] getNeighbors(int row, int col) {
-
-        final int[][] FOR_EVENS = {
-                {-1, 0}, {-1, -1},
-                { 0,-1}, { 0, 1},
-                { 1, 0}, { 1,-1}
-        };
-        final int[][] FOR_ODDS = {
-                {-1, 0}, {-1, 1},
-                { 0,-1}, { 0, 1},
-                { 1, 0}, { 1, 1}
-        };
-
-        int[][] deltas = (row % 2 == 0) ? FOR_EVENS : FOR_ODDS;
-
-        int[][] tmp = new int[6][2];
-        int count = 0;
-        for (int[] d : deltas) {
-            int rowNeighbor = row + d[0];
-            int colNeighbor = col + d[1];
-            if (inBounds(rowNeighbor, colNeighbor)) {
-                tmp[count][0] = rowNeighbor;
-                tmp[count][1] = colNeighbor;
-                count++;
+    private void verifyWinCounters() {
+        int hiddenSafe = 0;
+        int flaggedBooms = 0;
+        int misplacedFlags = 0;
+
+        int size = BOARD.size();
+        for (int i = 0; i < size; i++) {
+            if (BOARD.hasBoom(i)) {
+                if (BOARD.isFlagged(i)) {
+                    flaggedBooms++;
+                }
+            } else {
+                if (BOARD.isHidden(i)) {
+                    hiddenSafe++;
+                }
+                if (BOARD.isFlagged(i)) {
+                    misplacedFlags++;
+                }
             }
         }
 
-        int[][] result = new int[count][2];
-        System.arraycopy(tmp, 0, result, 0, count);
-        return result;
+        if (hiddenSafe != hiddenSafeCells || flaggedBooms != boomsFlagged
+                || misplacedFlags != wrongFlags) {
+            throw new IllegalStateException("Win counters out of sync:"
+                    + " hiddenSafe=" + hiddenSafeCells + "/" + hiddenSafe
+                    + " boomsFlagged=" + boomsFlagged + "/" + flaggedBooms
+                    + " wrongFlags=" + wrongFlags + "/" + misplacedFlags);
+        }
     }
 
     private void revealBoomsUponBoom() {
         gameOver = true;
 
-        for (int r = 0; r < ROWS; r++) {
-            for (int c = 0; c < COLS; c++) {
-                Cell cell = BOARD[r][c];
-                if (cell.hasBoom) {
-                    cell.hidden = false;
-                    pushCellState(r, c);
-                }
+        // only booms are uncovered here, so the safe-cell and flag counters
+        // used by the win check stay as they are
+
+        int size = BOARD.size();
+        for (int i = 0; i < size; i++) {
+            if (BOARD.hasBoom(i)) {
+                BOARD.setHidden(i, false);
+                pushCellState(i);
             }
         }
     }
 
+    /**
+     * Uncovers the selected cell and, when it has no neighboring booms,
+     * keeps opening the connected area around it. This used to recurse
+     * once per cell, which overflowed the stack on big open boards, so it
+     * now walks a reusable work queue and the precomputed neighbor offsets
+     * from HexGrid. Cells are uncovered as they are queued so no cell is
+     * ever visited twice.
+     */
     private void floodFillUncover(int row, int col) {
-        Cell cell = BOARD[row][col];
-
-        if (cell.hasBoom || !cell.hidden || cell.flagged) {
+        int start = indexOf(row, col);
+        if (!canFloodInto(start)) {
             return;
         }
 
-        cell.hidden = false;
-        pushCellState(row, col);
+        floodQueue.clear();
+        uncoverForFlood(start);
+        drainFlood();
+    }
 
-        if (cell.neighboringBooms != 0) {
-            return;
-        }
+    /**
+     * Runs the flood fill from every cell already on the flood queue,
+     * uncovering the area around each 0 until it reaches numbers.
+     */
+    private void drainFlood() {
+        while (!floodQueue.isEmpty()) {
+            int index = floodQueue.poll();
+            if (BOARD.getNeighboringBooms(index) != 0) {
+                continue;
+            }
 
-        for (int[] nbr : getNeighbors(row, col)) {
-            int nr = nbr[0], nc = nbr[1];
-            floodFillUncover(nr, nc);
+            int count = HexGrid.neighbors(index, ROWS, COLS, neighborBuffer);
+            for (int k = 0; k < count; k++) {
+                int neighbor = neighborBuffer[k];
+                if (canFloodInto(neighbor)) {
+                    uncoverForFlood(neighbor);
+                }
+            }
         }
     }
 
-    private void countNearbyBooms() {
-        for (int r = 0; r < ROWS; r++) {
-            for (int c = 0; c < COLS; c++) {
-                if (BOARD[r][c].hasBoom) {
-                    BOARD[r][c].neighboringBooms = -1;
+    private boolean canFloodInto(int index) {
+        return !BOARD.hasBoom(index) && BOARD.isHidden(index)
+                && !BOARD.isFlagged(index);
+    }
+
+    private void uncoverForFlood(int index) {
+        BOARD.setHidden(index, false);
+        hiddenSafeCells--;
+        pushCellState(index);
+        floodQueue.add(index);
+    }
+
+    /**
+     * Stores the number of neighboring booms in every cell of a board
+     * (booms get -1).
+     * @param board board with its booms planted
+     */
+    static void countNearbyBooms(BoardStorage board) {
+        countNearbyBooms(board, 0, board.rows());
+    }
+
+    /**
+     * Same as countNearbyBooms but only for the rows in [rowFrom, rowTo).
+     * It still looks at the rows just outside the range for their booms,
+     * so it gives the same counts as a whole-board pass as long as all the
+     * booms are planted first.
+     * @param board board with its booms planted
+     * @param rowFrom first row to count (inclusive)
+     * @param rowTo last row to count (exclusive)
+     */
+    static void countNearbyBooms(BoardStorage board, int rowFrom, int rowTo) {
+        int rows = board.rows();
+        int cols = board.cols();
+        int[] neighbors = new int[6];
+
+        for (int r = rowFrom; r < rowTo; r++) {
+            for (int c = 0; c < cols; c++) {
+                int index = r * cols + c;
+                if (board.hasBoom(index)) {
+                    board.setNeighboringBooms(index, -1);
                 } else {
                     int count = 0;
-                    for (int[] nbr : getNeighbors(r, c)) {
-                        int nr = nbr[0], nc = nbr[1];
-                        if (BOARD[nr][nc].hasBoom) {
+                    int found = HexGrid.neighbors(index, rows, cols,
+                            neighbors);
+                    for (int k = 0; k < found; k++) {
+                        if (board.hasBoom(neighbors[k])) {
                             count++;
                         }
                     }
-                    BOARD[r][c].neighboringBooms = count;
+                    board.setNeighboringBooms(index, count);
                 }
             }
         }
@@ -271,21 +834,47 @@ public class BoomFieldLogic implements GUIToLogic {
 
 
 
-    private void pushCellState(int row, int col) {
-        Cell cell = BOARD[row][col];
-        infoForGUI.updateCell(row, col,
-                cell.hasBoom,
-                cell.flagged,
-                cell.hidden,
-                cell.neighboringBooms);
+    /**
+     * Queues a changed cell for the gui. Changes are handed over in one
+     * batch per move by flushCellChanges (or earlier if the batch gets
+     * very large) instead of one callback per cell.
+     */
+    private void pushCellState(int index) {
+        if (journal != null) {
+            journal.cellChanged(index);
+        }
+        pendingChanges.add(index, BOARD.packedState(index));
+        if (pendingChanges.size() >= BoardDelta.MAX_BATCH) {
+            flushCellChanges();
+        }
+    }
+
+    private void beginJournalMove(int op, int index) {
+        if (journal != null) {
+            journal.beginMove(op, index, currentHeader());
+        }
+    }
+
+    private void endJournalMove() {
+        if (journal != null && journal.endMove()) {
+            journal.snapshot(BOARD, currentHeader());
+        }
+    }
+
+    private void flushCellChanges() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        infoForGUI.updateCells(pendingChanges);
+        pendingChanges.clear();
     }
 
     private void pushFullBoardState() {
-        for (int r = 0; r < ROWS; r++) {
-            for (int c = 0; c < COLS; c++) {
-                pushCellState(r, c);
-            }
+        int size = BOARD.size();
+        for (int i = 0; i < size; i++) {
+            pushCellState(i);
         }
+        flushCellChanges();
         infoForGUI.refreshBoard();
     }
 
@@ -308,22 +897,23 @@ public class BoomFieldLogic implements GUIToLogic {
             }
 
             for (int c = 0; c < COLS; c++) {
-                Cell cell = BOARD[r][c];
+                int index = indexOf(r, c);
                 char letter;
 
-                if (cell.hidden) {
-                    if (cell.flagged) {
+                if (BOARD.isHidden(index)) {
+                    if (BOARD.isFlagged(index)) {
                         letter = 'F';
                     } else {
                         letter = 'H';
                     }
                 } else {
-                    if (cell.hasBoom) {
+                    int nearby = BOARD.getNeighboringBooms(index);
+                    if (BOARD.hasBoom(index)) {
                         letter = '*';
-                    } else if (cell.neighboringBooms == 0) {
+                    } else if (nearby == 0) {
                         letter = 'U';
                     } else {
-                        letter = (char) ('0' + cell.neighboringBooms);
+                        letter = (char) ('0' + nearby);
                     }
                 }
 
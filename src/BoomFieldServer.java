@@ -0,0 +1,291 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * This class hosts many BoomField games at once over TCP, without a window
+ * per game, for practice ladders and bots. Every connection is a session
+ * with its own game, and only the connection's own thread ever touches
+ * that game, so sessions need no locking at all.
+ * <p>The protocol is one line per command and one line per reply:</p>
+ * <ul>
+ *     <li>NEW rows cols booms [seed] - starts a game, replies
+ *     "GAME rows cols booms seed"</li>
+ *     <li>OPEN row col / FLAG row col / CHORD row col - makes a move, replies
+ *     "OK flagsUsed PLAYING|WON|LOST changed index:state ..." listing the
+ *     packed state (see BoardStorage) of every cell the move changed. Only
+ *     what a player could see is sent: a hidden cell is just HIDDEN and
+ *     maybe FLAGGED, without its boom bit or count, so the booms only show
+ *     up once a lost game uncovers them</li>
+ *     <li>QUIT - closes the session</li>
+ * </ul>
+ * <p>Anything else gets "ERR message". Usage: java BoomFieldServer [port]</p>
+ */
+public class BoomFieldServer {
+
+    public static final int DEFAULT_PORT = 5251;
+
+    /** Largest board a session may ask for. */
+    static final int MAX_CELLS = 1 << 20;
+
+    // stack for connection threads when virtual threads are not available,
+    // small enough for 10k sessions, plenty for the iterative game logic
+    private static final long PLATFORM_STACK_SIZE = 256 * 1024;
+
+    private final int port;
+    private volatile ServerSocket serverSocket;
+
+    /**
+     * Builds a server for a localhost port.
+     * @param port port to listen on (0 picks a free one)
+     */
+    public BoomFieldServer(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Accepts connections until the server is closed, running each one as
+     * a session on its own thread.
+     * @throws IOException if the port cannot be opened
+     */
+    public void serve() throws IOException {
+        ExecutorService sessions = connectionExecutor("boomfield-session");
+        try (ServerSocket server = new ServerSocket(port, 1024,
+                InetAddress.getLoopbackAddress())) {
+            serverSocket = server;
+            while (!server.isClosed()) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (IOException e) {
+                    if (server.isClosed()) {
+                        break;
+                    }
+                    throw e;
+                }
+                sessions.execute(() -> new Session(socket).run());
+            }
+        } finally {
+            sessions.shutdownNow();
+        }
+    }
+
+    /**
+     * Port the server is listening on, once serve has opened it.
+     * @return local port, or -1 if not listening yet
+     */
+    public int getLocalPort() {
+        ServerSocket server = serverSocket;
+        return server == null ? -1 : server.getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections and ends serve.
+     * @throws IOException if the socket fails to close
+     */
+    public void close() throws IOException {
+        ServerSocket server = serverSocket;
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * One thread per task, each a virtual thread on Java 21 and later. On
+     * older runtimes virtual threads do not exist, so it falls back to
+     * daemon platform threads with a small stack.
+     * @param name name of the threads
+     * @return executor starting a thread per task
+     */
+    static ExecutorService connectionExecutor(String name) {
+        try {
+            Method virtual = Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(null, task, name, PLATFORM_STACK_SIZE);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * A single connection and its game. The session is the game's
+     * LogicToGUI and collects each move's changes into the reply line.
+     */
+    private static final class Session implements LogicToGUI {
+        private final Socket socket;
+        private final StringBuilder changes = new StringBuilder();
+        private int changed;
+        private int flagsUsed;
+        private BoomFieldLogic game;
+
+        Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        void run() {
+            try (Socket s = socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(
+                         s.getInputStream(), StandardCharsets.US_ASCII));
+                 Writer out = new BufferedWriter(new OutputStreamWriter(
+                         s.getOutputStream(), StandardCharsets.US_ASCII))) {
+                s.setTcpNoDelay(true);
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String reply = handle(line.trim());
+                    if (reply == null) {
+                        break;
+                    }
+                    out.write(reply);
+                    out.write('\n');
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // the client went away, nothing left to clean up
+            }
+        }
+
+        /**
+         * Runs one command.
+         * @return reply line, or null to close the session
+         */
+        private String handle(String line) {
+            String[] words = line.split("\\s+");
+            try {
+                switch (words[0].toUpperCase()) {
+                    case "NEW":
+                        return newGame(words);
+                    case "OPEN":
+                    case "FLAG":
+                    case "CHORD":
+                        return move(words);
+                    case "QUIT":
+                        return null;
+                    default:
+                        return "ERR unknown command " + words[0];
+                }
+            } catch (NumberFormatException e) {
+                return "ERR bad number in " + line;
+            } catch (IllegalArgumentException e) {
+                return "ERR " + e.getMessage();
+            }
+        }
+
+        private String newGame(String[] words) {
+            if (words.length < 4) {
+                return "ERR usage: NEW rows cols booms [seed]";
+            }
+            int rows = Integer.parseInt(words[1]);
+            int cols = Integer.parseInt(words[2]);
+            int booms = Integer.parseInt(words[3]);
+            long seed = words.length > 4 ? Long.parseLong(words[4])
+                    : new Random().nextLong();
+            if ((long) rows * cols > MAX_CELLS) {
+                return "ERR board larger than " + MAX_CELLS + " cells";
+            }
+
+            game = BoomFieldLogic.headless(rows, cols, booms, seed, this);
+            flagsUsed = 0;
+            clearChanges();
+            return "GAME " + rows + " " + cols + " " + booms + " " + seed;
+        }
+
+        private String move(String[] words) {
+            if (game == null) {
+                return "ERR no game, send NEW first";
+            }
+            if (words.length < 3) {
+                return "ERR usage: " + words[0] + " row col";
+            }
+            int row = Integer.parseInt(words[1]);
+            int col = Integer.parseInt(words[2]);
+            if (row < 0 || row >= game.getRows() || col < 0
+                    || col >= game.getCols()) {
+                return "ERR no cell " + row + "," + col;
+            }
+
+            clearChanges();
+            GUIToLogic moves = game;
+            if ("OPEN".equalsIgnoreCase(words[0])) {
+                moves.uncoverSelectedCell(row, col);
+            } else if ("CHORD".equalsIgnoreCase(words[0])) {
+                moves.chord(row, col);
+            } else {
+                moves.toggleFlag(row, col);
+            }
+
+            String state = !game.isGameOver() ? "PLAYING"
+                    : game.isWon() ? "WON" : "LOST";
+            return "OK " + flagsUsed + " " + state + " " + changed + changes;
+        }
+
+        private void clearChanges() {
+            changes.setLength(0);
+            changed = 0;
+        }
+
+        @Override
+        public void updateFlagsUsed(int flags) {
+            flagsUsed = flags;
+        }
+
+        @Override
+        public void updateCell(int row, int col, boolean hasBoom,
+                               boolean flagged, boolean hidden,
+                               int neighboringBooms) {
+            // the logic sends batches through updateCells
+        }
+
+        @Override
+        public void updateCells(BoardDelta delta) {
+            for (int i = 0; i < delta.size(); i++) {
+                changes.append(' ').append(delta.indexAt(i))
+                        .append(':').append(visibleState(delta.stateAt(i)));
+            }
+            changed += delta.size();
+        }
+
+        /**
+         * What the player may know about a cell, the same masking as
+         * HexSolver.observe: nothing about a hidden cell but its flag.
+         */
+        private int visibleState(int state) {
+            if ((state & BoardStorage.HIDDEN) != 0) {
+                return state & (BoardStorage.HIDDEN | BoardStorage.FLAGGED);
+            }
+            return state;
+        }
+
+        @Override
+        public void showGameOver(boolean won) {
+            // reported in the move's reply
+        }
+
+        @Override
+        public void refreshBoard() {
+            // nothing to draw
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        BoomFieldServer server = new BoomFieldServer(port);
+        System.out.println("BoomField server on localhost:" + port);
+        server.serve();
+    }
+}
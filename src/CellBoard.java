@@ -0,0 +1,90 @@
+/**
+ * This is the original board layout from the previous assignment: every
+ * tile is its own Cell object. It is easy to read in a debugger, which is
+ * why it is still the default for the small boards the gui uses, but every
+ * cell costs an object header and a pointer so it does not scale to very
+ * large boards (see PackedBoard for that).
+ */
+public class CellBoard implements BoardStorage {
+
+    private final int rows;
+    private final int cols;
+    private final Cell[] cells;
+
+    private static class Cell {
+        boolean hasBoom;
+        boolean flagged;
+        boolean hidden = true;
+        int neighboringBooms = 0;
+    }
+
+    /**
+     * Builds the board with a fresh hidden Cell for every position.
+     * @param rows number of rows
+     * @param cols number of cols
+     */
+    public CellBoard(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = new Cell[BoardStorage.checkedSize(rows, cols)];
+
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new Cell();
+        }
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public int cols() {
+        return cols;
+    }
+
+    @Override
+    public int size() {
+        return cells.length;
+    }
+
+    @Override
+    public boolean hasBoom(int index) {
+        return cells[index].hasBoom;
+    }
+
+    @Override
+    public void setBoom(int index, boolean hasBoom) {
+        cells[index].hasBoom = hasBoom;
+    }
+
+    @Override
+    public boolean isFlagged(int index) {
+        return cells[index].flagged;
+    }
+
+    @Override
+    public void setFlagged(int index, boolean flagged) {
+        cells[index].flagged = flagged;
+    }
+
+    @Override
+    public boolean isHidden(int index) {
+        return cells[index].hidden;
+    }
+
+    @Override
+    public void setHidden(int index, boolean hidden) {
+        cells[index].hidden = hidden;
+    }
+
+    @Override
+    public int getNeighboringBooms(int index) {
+        return cells[index].neighboringBooms;
+    }
+
+    @Override
+    public void setNeighboringBooms(int index, int count) {
+        cells[index].neighboringBooms = count;
+    }
+}
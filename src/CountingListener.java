@@ -0,0 +1,65 @@
+/**
+ * This is a LogicToGUI that has no gui behind it. It only counts what the
+ * logic layer tells it, which is all a headless game needs (the batch
+ * runner and benchmarks use it). It overrides the batched update so a
+ * cascade costs one call instead of one per cell.
+ */
+public class CountingListener implements LogicToGUI {
+
+    private long cellUpdates = 0;
+    private long batches = 0;
+    private int flagsUsed = 0;
+    private boolean gameOver = false;
+    private boolean won = false;
+
+    @Override
+    public void updateCell(int row, int col,
+                           boolean hasBoom,
+                           boolean flagged,
+                           boolean hidden,
+                           int neighboringBooms) {
+        cellUpdates++;
+    }
+
+    @Override
+    public void updateCells(BoardDelta delta) {
+        cellUpdates += delta.size();
+        batches++;
+    }
+
+    @Override
+    public void showGameOver(boolean won) {
+        this.gameOver = true;
+        this.won = won;
+    }
+
+    @Override
+    public void refreshBoard() {
+        // nothing to repaint
+    }
+
+    @Override
+    public void updateFlagsUsed(int flagsUsed) {
+        this.flagsUsed = flagsUsed;
+    }
+
+    public long getCellUpdates() {
+        return cellUpdates;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public int getFlagsUsed() {
+        return flagsUsed;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public boolean isWon() {
+        return won;
+    }
+}
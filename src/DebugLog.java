@@ -0,0 +1,92 @@
+import java.io.PrintStream;
+import java.util.function.Supplier;
+
+
+/**
+ * This class is where the sanity check prints go now. Messages have a
+ * level and only the ones at or above the level picked with
+ * -Dboomfield.log=off|error|info|debug|trace are printed; by default only
+ * errors are, and they go to System.err with their stack trace.
+ * Messages are passed as a Supplier so a message that is not printed is
+ * never even built, and the level is a constant, so a disabled call costs
+ * nothing once the JIT has seen it.
+ */
+public final class DebugLog {
+
+    /**
+     * How much detail a message is.
+     */
+    public enum Level {
+        /** Nothing is printed. */
+        OFF,
+        /** Something failed, like an asset that would not load. */
+        ERROR,
+        /** Things worth knowing once, like startup timings. */
+        INFO,
+        /** Per move details, like the flags used. */
+        DEBUG,
+        /** Everything, like the whole board after every move. */
+        TRACE
+    }
+
+    private static final Level THRESHOLD = parse(
+            System.getProperty("boomfield.log", "error"));
+
+    private DebugLog() {
+    }
+
+    /**
+     * Whether messages of a level are printed.
+     * @param level level of the message
+     * @return true if printed
+     */
+    public static boolean isEnabled(Level level) {
+        return level != Level.OFF && level.ordinal() <= THRESHOLD.ordinal();
+    }
+
+    /**
+     * Prints a failure and its stack trace to System.err, unless logging
+     * is switched off.
+     * @param message builds the message, only called if it is printed
+     * @param cause what went wrong
+     */
+    public static void error(Supplier<String> message, Throwable cause) {
+        if (isEnabled(Level.ERROR)) {
+            System.err.println(message.get());
+            cause.printStackTrace();
+        }
+    }
+
+    public static void info(Supplier<String> message) {
+        log(Level.INFO, message);
+    }
+
+    public static void debug(Supplier<String> message) {
+        log(Level.DEBUG, message);
+    }
+
+    public static void trace(Supplier<String> message) {
+        log(Level.TRACE, message);
+    }
+
+    /**
+     * Prints a message if its level is enabled.
+     * @param level level of the message
+     * @param message builds the message, only called if it is printed
+     */
+    public static void log(Level level, Supplier<String> message) {
+        if (isEnabled(level)) {
+            PrintStream out = level == Level.ERROR ? System.err : System.out;
+            out.println(message.get());
+        }
+    }
+
+    private static Level parse(String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown boomfield.log level: " + name);
+            return Level.ERROR;
+        }
+    }
+}
@@ -0,0 +1,640 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+
+/**
+ * This is the logic layer for the endless BoomField mode. Instead of one
+ * big array the field is made of CHUNK_SIZE x CHUNK_SIZE chunks that are
+ * only created when a move or the viewport touches them. A chunk's booms
+ * come from (seed, chunkX, chunkY) alone, so any chunk can be rebuilt at
+ * any time and chunks nobody has looked at cost nothing. Rows and columns
+ * are plain ints and may be negative; the game starts around (0, 0), which
+ * is always free of booms.
+ * <p>To keep memory bounded during long sessions, live chunks are kept in
+ * LRU order and trimmed back to the limit after every move. A chunk that
+ * leaves memory never loses what the player did there, and its booms are
+ * never stored since they can be regenerated from the seed. Untouched
+ * chunks are simply dropped. Fully resolved chunks (every safe cell
+ * uncovered) with no flags shrink to a single bit in a bitset of resolved
+ * chunks, 64 chunks to a word. Any other played chunk is parked as just
+ * its hidden bits, plus its flag bits if it has any (a third or two
+ * thirds of a live chunk).</p>
+ * <p>There is no win in this mode; the game runs until a boom is hit.
+ * The gui only ever shows a window of the field, set with touchViewport.
+ * Changes to cells inside it are sent once per move as a BoardDelta whose
+ * indices are relative to the window (row - first row) * window cols +
+ * (col - first col); changes outside it are not sent at all, they show up
+ * when the window moves over them.</p>
+ */
+public class EndlessBoomField implements GUIToLogic {
+
+    public static final int CHUNK_SIZE = 64;
+    /**
+     * Lowest boom density allowed. Below roughly 9.5% the empty areas of a
+     * hex field stop being finite, and a single click could open forever.
+     */
+    public static final double MIN_DENSITY = 0.15;
+
+    private static final int CHUNK_SHIFT = 6;               // log2(CHUNK_SIZE)
+    private static final int CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE;
+    private static final int WORDS = CHUNK_CELLS / 64;
+    private static final int MINE_CACHE_SIZE = 256;
+    private static final int REGION_SHIFT = 3;  // 8x8 chunks per bitset word
+
+    private final long seed;
+    private final double density;
+    private final int maxLiveChunks;
+    private final LogicToGUI infoForGUI;
+
+    // live chunks in least-recently-used order
+    private final LinkedHashMap<Long, Chunk> chunks =
+            new LinkedHashMap<>(64, 0.75f, true);
+    // evicted resolved chunks without flags: region key -> one bit per
+    // chunk of an 8x8 region of chunks
+    private final HashMap<Long, Long> resolvedChunks = new HashMap<>();
+    // other evicted played chunks: key -> hidden bits then flag bits (the
+    // flag bits are left off when there are none)
+    private final HashMap<Long, long[]> parkedChunks = new HashMap<>();
+    // boom bits of chunks that are only looked at to count neighbors
+    private final LinkedHashMap<Long, long[]> mineCache =
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, long[]> e) {
+                    return size() > MINE_CACHE_SIZE;
+                }
+            };
+
+    private final IntQueue floodQueue = new IntQueue(64);
+
+    // the window of the field the gui shows, see touchViewport
+    private int viewRow = 0;
+    private int viewCol = 0;
+    private int viewRows = 0;
+    private int viewCols = 0;
+    private BoardDelta pendingChanges = new BoardDelta(1, 1);
+
+    private long cellsRevealed = 0;
+    private int flagsUsed = 0;
+    private boolean gameOver = false;
+
+    private static final class Chunk {
+        final long[] mines;
+        final long[] hidden = new long[WORDS];
+        final long[] flagged = new long[WORDS];
+        final int safeCells;
+        int revealedSafe = 0;
+        int flags = 0;
+
+        Chunk(long[] mines) {
+            this.mines = mines;
+            int count = 0;
+            for (int w = 0; w < WORDS; w++) {
+                hidden[w] = -1L;
+                count += Long.bitCount(mines[w]);
+            }
+            this.safeCells = CHUNK_CELLS - count;
+        }
+
+        boolean isPristine() {
+            return revealedSafe == 0 && flags == 0;
+        }
+
+        boolean isResolved() {
+            return revealedSafe == safeCells;
+        }
+    }
+
+    /**
+     * Starts an endless game.
+     * @param seed seed the whole field is generated from
+     * @param density chance of a boom in each cell (MIN_DENSITY to 1)
+     * @param maxLiveChunks chunks to keep in memory before evicting
+     * @param infoForGUI information for the gui
+     */
+    public EndlessBoomField(long seed, double density, int maxLiveChunks,
+                            LogicToGUI infoForGUI) {
+        if (density < MIN_DENSITY || density > 1.0) {
+            throw new IllegalArgumentException("Density must be between "
+                    + MIN_DENSITY + " and 1: " + density);
+        }
+        if (maxLiveChunks < 1) {
+            throw new IllegalArgumentException(
+                    "Need room for at least one chunk: " + maxLiveChunks);
+        }
+        this.seed = seed;
+        this.density = density;
+        this.maxLiveChunks = maxLiveChunks;
+        this.infoForGUI = infoForGUI;
+    }
+
+    /**
+     * Uncovers a cell. Hitting a boom ends the game; an empty cell opens
+     * the connected empty area around it, across chunk borders.
+     * @param row global row
+     * @param col global col
+     */
+    @Override
+    public void uncoverSelectedCell(int row, int col) {
+        if (gameOver) {
+            return;
+        }
+        Chunk chunk = chunkFor(row, col);
+        int bit = localIndex(row, col);
+        if (!isSet(chunk.hidden, bit) || isSet(chunk.flagged, bit)) {
+            return;
+        }
+
+        if (isSet(chunk.mines, bit)) {
+            gameOver = true;
+            revealLiveBooms();
+            flushCellChanges();
+            infoForGUI.showGameOver(false);
+            infoForGUI.refreshBoard();
+            return;
+        }
+
+        floodFillUncover(row, col);
+        flushCellChanges();
+        evictChunks();
+    }
+
+    /**
+     * Chords on an uncovered number whose flags are all placed, uncovering
+     * every other hidden neighbor with a single flood fill. A wrong flag
+     * means one of them is a boom, which ends the game.
+     * @param row row of the number
+     * @param col col of the number
+     */
+    @Override
+    public void chord(int row, int col) {
+        if (gameOver) {
+            return;
+        }
+        Chunk chunk = chunkFor(row, col);
+        int bit = localIndex(row, col);
+        if (isSet(chunk.hidden, bit) || isSet(chunk.mines, bit)) {
+            return;
+        }
+
+        int[] colOffsets = (row & 1) == 0
+                ? HexGrid.EVEN_COL_OFFSETS : HexGrid.ODD_COL_OFFSETS;
+        int flags = 0;
+        int targets = 0;
+        boolean hitsBoom = false;
+        for (int k = 0; k < 6; k++) {
+            Chunk near = chunkFor(row + HexGrid.ROW_OFFSETS[k],
+                    col + colOffsets[k]);
+            int nearBit = localIndex(row + HexGrid.ROW_OFFSETS[k],
+                    col + colOffsets[k]);
+            if (!isSet(near.hidden, nearBit)) {
+                continue;
+            }
+            if (isSet(near.flagged, nearBit)) {
+                flags++;
+            } else {
+                targets++;
+                hitsBoom |= isSet(near.mines, nearBit);
+            }
+        }
+        if (flags != countNearbyBooms(row, col) || targets == 0) {
+            return;
+        }
+
+        if (hitsBoom) {
+            gameOver = true;
+            revealLiveBooms();
+            flushCellChanges();
+            infoForGUI.showGameOver(false);
+            infoForGUI.refreshBoard();
+            return;
+        }
+
+        floodQueue.clear();
+        for (int k = 0; k < 6; k++) {
+            int nr = row + HexGrid.ROW_OFFSETS[k];
+            int nc = col + colOffsets[k];
+            Chunk near = chunkFor(nr, nc);
+            int nearBit = localIndex(nr, nc);
+            if (isSet(near.hidden, nearBit) && !isSet(near.flagged, nearBit)) {
+                uncoverForFlood(nr, nc);
+            }
+        }
+        drainFlood();
+        flushCellChanges();
+        evictChunks();
+    }
+
+    /**
+     * Flags or unflags a hidden cell.
+     * @param row global row
+     * @param col global col
+     */
+    @Override
+    public void toggleFlag(int row, int col) {
+        if (gameOver) {
+            return;
+        }
+        Chunk chunk = chunkFor(row, col);
+        int bit = localIndex(row, col);
+        if (!isSet(chunk.hidden, bit)) {
+            return;
+        }
+
+        boolean flagged = !isSet(chunk.flagged, bit);
+        set(chunk.flagged, bit, flagged);
+        chunk.flags += flagged ? 1 : -1;
+        flagsUsed += flagged ? 1 : -1;
+
+        pushCellState(chunk, row, col);
+        flushCellChanges();
+        infoForGUI.updateFlagsUsed(flagsUsed);
+        evictChunks();
+    }
+
+    /**
+     * Moves the window of the field the gui shows, makes sure every chunk
+     * overlapping it is in memory and pushes the state of all its cells to
+     * the gui in one delta. From then on only changes inside the window
+     * are sent. The first row must be even, so the window's rows are
+     * shifted the same way as the field's (odd rows sit half a cell over).
+     * @param rowMin first visible row, even
+     * @param colMin first visible col
+     * @param rowMax last visible row
+     * @param colMax last visible col
+     */
+    public void touchViewport(int rowMin, int colMin, int rowMax, int colMax) {
+        if ((rowMin & 1) != 0 || rowMax < rowMin || colMax < colMin) {
+            throw new IllegalArgumentException("Bad viewport " + rowMin + ","
+                    + colMin + " to " + rowMax + "," + colMax);
+        }
+        int rows = rowMax - rowMin + 1;
+        int cols = colMax - colMin + 1;
+        BoardStorage.checkedSize(rows, cols);
+        if (cols != viewCols) {
+            pendingChanges = new BoardDelta(cols, 64);
+        }
+        pendingChanges.clear();
+        viewRow = rowMin;
+        viewCol = colMin;
+        viewRows = rows;
+        viewCols = cols;
+
+        for (int r = rowMin; r <= rowMax; r++) {
+            for (int c = colMin; c <= colMax; c++) {
+                pushCellState(chunkFor(r, c), r, c);
+            }
+        }
+        flushCellChanges();
+        infoForGUI.refreshBoard();
+        evictChunks();
+    }
+
+    /**
+     * Packed state of a cell (see the bit constants in BoardStorage)
+     * without creating its chunk. Cells of chunks that are not in memory
+     * read as hidden.
+     * @param row global row
+     * @param col global col
+     * @return packed cell state
+     */
+    public int stateAt(int row, int col) {
+        long key = chunkKey(row >> CHUNK_SHIFT, col >> CHUNK_SHIFT);
+        Chunk chunk = chunks.get(key);
+        if (chunk == null) {
+            if (!isResolved(key) && !parkedChunks.containsKey(key)) {
+                return BoardStorage.HIDDEN;
+            }
+            chunk = chunkFor(row, col);
+        }
+        return packedState(chunk, row, col);
+    }
+
+    public long getCellsRevealed() {
+        return cellsRevealed;
+    }
+
+    public int getFlagsUsed() {
+        return flagsUsed;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * Chunks currently held in full in memory.
+     * @return live chunk count
+     */
+    public int getLiveChunks() {
+        return chunks.size();
+    }
+
+    /**
+     * Played chunks that are out of memory and kept as their hidden and
+     * flag bits.
+     * @return parked chunk count
+     */
+    public int getParkedChunks() {
+        return parkedChunks.size();
+    }
+
+    /**
+     * Resolved chunks that are out of memory and kept as a bit.
+     * @return resolved chunk count
+     */
+    public int getResolvedChunks() {
+        int count = 0;
+        for (long bits : resolvedChunks.values()) {
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    private void floodFillUncover(int row, int col) {
+        floodQueue.clear();
+        uncoverForFlood(row, col);
+        drainFlood();
+    }
+
+    /**
+     * Runs the flood fill from every cell already on the flood queue.
+     */
+    private void drainFlood() {
+        while (!floodQueue.isEmpty()) {
+            int r = floodQueue.poll();
+            int c = floodQueue.poll();
+            if (countNearbyBooms(r, c) != 0) {
+                continue;
+            }
+
+            int[] colOffsets = (r & 1) == 0
+                    ? HexGrid.EVEN_COL_OFFSETS : HexGrid.ODD_COL_OFFSETS;
+            for (int k = 0; k < 6; k++) {
+                int nr = r + HexGrid.ROW_OFFSETS[k];
+                int nc = c + colOffsets[k];
+                Chunk chunk = chunkFor(nr, nc);
+                int bit = localIndex(nr, nc);
+                if (isSet(chunk.hidden, bit) && !isSet(chunk.flagged, bit)
+                        && !isSet(chunk.mines, bit)) {
+                    uncoverForFlood(nr, nc);
+                }
+            }
+        }
+    }
+
+    private void uncoverForFlood(int row, int col) {
+        Chunk chunk = chunkFor(row, col);
+        set(chunk.hidden, localIndex(row, col), false);
+        chunk.revealedSafe++;
+        cellsRevealed++;
+        pushCellState(chunk, row, col);
+        floodQueue.add(row);
+        floodQueue.add(col);
+    }
+
+    private void revealLiveBooms() {
+        for (Map.Entry<Long, Chunk> entry : chunks.entrySet()) {
+            Chunk chunk = entry.getValue();
+            long key = entry.getKey();
+            int baseRow = (int) (key >> 32) << CHUNK_SHIFT;
+            int baseCol = (int) key << CHUNK_SHIFT;
+            for (int bit = 0; bit < CHUNK_CELLS; bit++) {
+                if (isSet(chunk.mines, bit)) {
+                    set(chunk.hidden, bit, false);
+                    pushCellState(chunk, baseRow + (bit >> CHUNK_SHIFT),
+                            baseCol + (bit & (CHUNK_SIZE - 1)));
+                }
+            }
+        }
+    }
+
+    private int countNearbyBooms(int row, int col) {
+        int[] colOffsets = (row & 1) == 0
+                ? HexGrid.EVEN_COL_OFFSETS : HexGrid.ODD_COL_OFFSETS;
+        int count = 0;
+        for (int k = 0; k < 6; k++) {
+            int nr = row + HexGrid.ROW_OFFSETS[k];
+            int nc = col + colOffsets[k];
+            if (isSet(minesOf(nr >> CHUNK_SHIFT, nc >> CHUNK_SHIFT),
+                    localIndex(nr, nc))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Queues a cell for the gui if it is inside the window.
+     */
+    private void pushCellState(Chunk chunk, int row, int col) {
+        int r = row - viewRow;
+        int c = col - viewCol;
+        if (r < 0 || r >= viewRows || c < 0 || c >= viewCols) {
+            return;
+        }
+        pendingChanges.add(r * viewCols + c, packedState(chunk, row, col));
+        if (pendingChanges.size() >= BoardDelta.MAX_BATCH) {
+            flushCellChanges();
+        }
+    }
+
+    private void flushCellChanges() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        infoForGUI.updateCells(pendingChanges);
+        pendingChanges.clear();
+    }
+
+    private int packedState(Chunk chunk, int row, int col) {
+        int bit = localIndex(row, col);
+        int state = 0;
+        if (isSet(chunk.mines, bit)) {
+            state |= BoardStorage.BOOM;
+        } else if (!isSet(chunk.hidden, bit)) {
+            state |= countNearbyBooms(row, col) << BoardStorage.COUNT_SHIFT;
+        }
+        if (isSet(chunk.flagged, bit)) {
+            state |= BoardStorage.FLAGGED;
+        }
+        if (isSet(chunk.hidden, bit)) {
+            state |= BoardStorage.HIDDEN;
+        }
+        return state;
+    }
+
+    /**
+     * Returns the live chunk holding a cell, creating it (or rebuilding it
+     * from its bit or its parked bitsets) if needed.
+     */
+    private Chunk chunkFor(int row, int col) {
+        int chunkY = row >> CHUNK_SHIFT;
+        int chunkX = col >> CHUNK_SHIFT;
+        long key = chunkKey(chunkY, chunkX);
+
+        Chunk chunk = chunks.get(key);
+        if (chunk != null) {
+            return chunk;
+        }
+
+        long[] mines = mineCache.remove(key);
+        chunk = new Chunk(mines != null ? mines : generateMines(chunkY, chunkX));
+
+        long[] parked = parkedChunks.remove(key);
+        if (parked != null) {
+            int stillHidden = 0;
+            for (int w = 0; w < WORDS; w++) {
+                chunk.hidden[w] = parked[w];
+                stillHidden += Long.bitCount(parked[w] & ~chunk.mines[w]);
+                if (parked.length > WORDS) {
+                    chunk.flagged[w] = parked[WORDS + w];
+                    chunk.flags += Long.bitCount(parked[WORDS + w]);
+                }
+            }
+            chunk.revealedSafe = chunk.safeCells - stillHidden;
+        } else if (clearResolved(key)) {
+            System.arraycopy(chunk.mines, 0, chunk.hidden, 0, WORDS);
+            chunk.revealedSafe = chunk.safeCells;   // only booms stay hidden
+        }
+        chunks.put(key, chunk);
+        return chunk;
+    }
+
+    private long[] minesOf(int chunkY, int chunkX) {
+        long key = chunkKey(chunkY, chunkX);
+        Chunk chunk = chunks.get(key);
+        if (chunk != null) {
+            return chunk.mines;
+        }
+        long[] mines = mineCache.get(key);
+        if (mines == null) {
+            mines = generateMines(chunkY, chunkX);
+            mineCache.put(key, mines);
+        }
+        return mines;
+    }
+
+    /**
+     * Booms of a chunk, from the seed and chunk position only. The cells
+     * around (0, 0) are always kept clear so the first click is safe.
+     */
+    private long[] generateMines(int chunkY, int chunkX) {
+        SplittableRandom random = new SplittableRandom(chunkSeed(chunkY, chunkX));
+        long[] mines = new long[WORDS];
+        for (int bit = 0; bit < CHUNK_CELLS; bit++) {
+            if (random.nextDouble() < density) {
+                mines[bit >> 6] |= 1L << bit;
+            }
+        }
+
+        if (chunkY >= -1 && chunkY <= 0 && chunkX >= -1 && chunkX <= 0) {
+            clearStartArea(mines, chunkY, chunkX);
+        }
+        return mines;
+    }
+
+    private void clearStartArea(long[] mines, int chunkY, int chunkX) {
+        for (int k = -1; k < 6; k++) {
+            int r = k < 0 ? 0 : HexGrid.ROW_OFFSETS[k];
+            int c = k < 0 ? 0 : HexGrid.EVEN_COL_OFFSETS[k];
+            if (r >> CHUNK_SHIFT == chunkY && c >> CHUNK_SHIFT == chunkX) {
+                int bit = localIndex(r, c);
+                mines[bit >> 6] &= ~(1L << bit);
+            }
+        }
+    }
+
+    /**
+     * Trims the live chunks back to the limit, oldest first. Untouched
+     * chunks are dropped, resolved ones without flags become a bit in
+     * resolvedChunks, and every other one is parked as its hidden and flag
+     * bits. The booms are never kept, they come back from the seed.
+     */
+    private void evictChunks() {
+        Iterator<Map.Entry<Long, Chunk>> it = chunks.entrySet().iterator();
+        while (chunks.size() > maxLiveChunks && it.hasNext()) {
+            Map.Entry<Long, Chunk> entry = it.next();
+            Chunk chunk = entry.getValue();
+            if (chunk.isResolved() && chunk.flags == 0) {
+                markResolved(entry.getKey());
+            } else if (!chunk.isPristine()) {
+                long[] parked = new long[chunk.flags == 0 ? WORDS : 2 * WORDS];
+                System.arraycopy(chunk.hidden, 0, parked, 0, WORDS);
+                if (chunk.flags != 0) {
+                    System.arraycopy(chunk.flagged, 0, parked, WORDS, WORDS);
+                }
+                parkedChunks.put(entry.getKey(), parked);
+            }
+            it.remove();
+        }
+    }
+
+    private boolean isResolved(long key) {
+        Long bits = resolvedChunks.get(regionKey(key));
+        return bits != null && (bits & regionBit(key)) != 0;
+    }
+
+    private void markResolved(long key) {
+        resolvedChunks.merge(regionKey(key), regionBit(key), (a, b) -> a | b);
+    }
+
+    /**
+     * Takes a chunk out of the resolved bitset.
+     * @return true if it was in there
+     */
+    private boolean clearResolved(long key) {
+        long region = regionKey(key);
+        Long bits = resolvedChunks.get(region);
+        long bit = regionBit(key);
+        if (bits == null || (bits & bit) == 0) {
+            return false;
+        }
+        if (bits == bit) {
+            resolvedChunks.remove(region);
+        } else {
+            resolvedChunks.put(region, bits & ~bit);
+        }
+        return true;
+    }
+
+    private static long regionKey(long key) {
+        return chunkKey((int) (key >> 32) >> REGION_SHIFT,
+                (int) key >> REGION_SHIFT);
+    }
+
+    private static long regionBit(long key) {
+        int mask = (1 << REGION_SHIFT) - 1;
+        return 1L << ((((int) (key >> 32) & mask) << REGION_SHIFT)
+                | ((int) key & mask));
+    }
+
+    private long chunkSeed(int chunkY, int chunkX) {
+        long z = seed ^ (chunkKey(chunkY, chunkX) * 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long chunkKey(int chunkY, int chunkX) {
+        return ((long) chunkY << 32) | (chunkX & 0xFFFFFFFFL);
+    }
+
+    private static int localIndex(int row, int col) {
+        return ((row & (CHUNK_SIZE - 1)) << CHUNK_SHIFT) | (col & (CHUNK_SIZE - 1));
+    }
+
+    private static boolean isSet(long[] bits, int bit) {
+        return (bits[bit >> 6] & (1L << bit)) != 0;
+    }
+
+    private static void set(long[] bits, int bit, boolean on) {
+        if (on) {
+            bits[bit >> 6] |= 1L << bit;
+        } else {
+            bits[bit >> 6] &= ~(1L << bit);
+        }
+    }
+}
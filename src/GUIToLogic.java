@@ -6,4 +6,13 @@ public interface GUIToLogic {
     void uncoverSelectedCell(int row, int col);
 
     void toggleFlag(int row, int col);
+
+    /**
+     * Chords on an uncovered number: if exactly that many of its neighbors
+     * are flagged, every other hidden neighbor is uncovered in one move.
+     * Anything else (a hidden cell, a wrong flag count) does nothing.
+     * @param row row of the number
+     * @param col col of the number
+     */
+    void chord(int row, int col);
 }
@@ -0,0 +1,423 @@
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+
+/**
+ * This class runs the game logic on its own thread so the Swing event
+ * thread (EDT) never waits for a move. Clicks are turned into commands on
+ * a queue, and a single engine thread takes them off one at a time, so
+ * BoomFieldLogic is only ever touched by that thread and moves happen in
+ * exactly the order they were clicked.
+ * <p>Going the other way, the engine is the logic's LogicToGUI. Every
+ * callback is queued for the EDT (deltas are copied first, since the logic
+ * reuses its delta) and tagged with an increasing version. A Swing timer
+ * drains the queue about 60 times a second, so however many deltas a
+ * cascade produces, the board is repainted at most once per frame. The
+ * timer only runs while there is something to drain: the first callback
+ * after a quiet spell starts it and a drain that empties the queue stops
+ * it, so an idle game does not wake the EDT at all.</p>
+ * <p>The engine runs either a normal game or an endless one
+ * (EndlessBoomField). Clicks go to whichever is running; tasks like undo
+ * and save only work on a normal game.</p>
+ * <p>A click is meant for the board the player saw when clicking. While a
+ * new game is being built the old one is still on screen, so clicks made
+ * until the new one is shown are dropped instead of landing on a board
+ * the player has not seen yet.</p>
+ */
+public class GameEngine implements GUIToLogic, LogicToGUI {
+
+    /** Milliseconds between two drains of the gui queue (about 60Hz). */
+    static final int FRAME_MILLIS = 16;
+
+    /**
+     * Builds the game the engine should run, on the engine thread.
+     */
+    public interface GameFactory {
+        /**
+         * @param listener the engine, to pass to the game as its LogicToGUI
+         * @return the new game
+         * @throws IOException if the game is loaded from a file and fails
+         */
+        BoomFieldLogic create(LogicToGUI listener) throws IOException;
+    }
+
+    /**
+     * Builds an endless game, on the engine thread.
+     */
+    public interface EndlessFactory {
+        /**
+         * @param listener the engine, to pass to the game as its LogicToGUI
+         * @return the new game
+         */
+        EndlessBoomField create(LogicToGUI listener);
+    }
+
+    /**
+     * Either kind of factory, so both go through the same replace logic.
+     */
+    private interface Factory<G extends GUIToLogic> {
+        G create(LogicToGUI listener) throws IOException;
+    }
+
+    /**
+     * Work to run on the engine thread against the current game.
+     * @param <T> result type
+     */
+    public interface Task<T> {
+        /**
+         * @param logic the current game
+         * @return the result handed back through the future
+         * @throws IOException if the task does file work that fails
+         */
+        T run(BoomFieldLogic logic) throws IOException;
+    }
+
+    private final LogicToGUI gui;
+    private final BlockingQueue<Runnable> commands = new LinkedBlockingQueue<>();
+    private final ConcurrentLinkedQueue<Runnable> guiEvents =
+            new ConcurrentLinkedQueue<>();
+    private final Thread engineThread;
+    private final Timer frameTimer;
+    private final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+
+    private BoomFieldLogic logic;               // engine thread only
+    private EndlessBoomField endless;           // engine thread only
+    private GUIToLogic moves;                   // engine thread only, one of the two
+    private long installedGame = 0;             // engine thread only
+    private volatile long shownGame = 0;        // set on the EDT
+    private List<Runnable> heldEvents;          // engine thread only
+    private volatile long publishedVersion = 0;
+    private volatile long appliedVersion = 0;
+    private boolean draining = false;           // EDT only
+
+    /**
+     * Starts the engine thread. The frame timer starts with the first
+     * callback.
+     * @param gui receives the game's callbacks on the EDT
+     */
+    public GameEngine(LogicToGUI gui) {
+        this.gui = gui;
+        this.engineThread = new Thread(this::runCommands, "boomfield-engine");
+        engineThread.setDaemon(true);
+        engineThread.start();
+
+        this.frameTimer = new Timer(FRAME_MILLIS, e -> drainGuiEvents());
+        frameTimer.setCoalesce(true);
+    }
+
+    /**
+     * Replaces the current game with a new one built on the engine thread,
+     * after every command queued before it. The new game pushes its full
+     * board to the gui as usual. If the factory fails, the old game keeps
+     * running.
+     * @param factory builds the new game
+     * @return completes with the new game, or with the factory's exception
+     */
+    public CompletableFuture<BoomFieldLogic> replaceGame(GameFactory factory) {
+        return replaceGame(factory, null);
+    }
+
+    /**
+     * Same as replaceGame, but first runs guiReset on the EDT. It runs
+     * after the gui has applied every update from the old game and before
+     * any update from the new one, so it is the place to reset the timer
+     * or swap in a board panel of a different size. It only runs if the
+     * factory succeeds: the callbacks the new game makes while it is built
+     * are held back until then and queued after guiReset, and if the
+     * factory fails they are thrown away and the gui is left alone.
+     * @param factory builds the new game
+     * @param guiReset work to run on the EDT between the two games, or null
+     * @return completes with the new game, or with the factory's exception
+     */
+    public CompletableFuture<BoomFieldLogic> replaceGame(GameFactory factory,
+                                                         Runnable guiReset) {
+        return replace(factory::create, guiReset, created -> {
+            logic = created;
+            endless = null;
+        });
+    }
+
+    /**
+     * Replaces the current game with an endless one, the same way
+     * replaceGame does (guiReset runs only if the game is built).
+     * @param factory builds the endless game
+     * @param guiReset work to run on the EDT between the two games, or null
+     * @return completes with the new game, or with the factory's exception
+     */
+    public CompletableFuture<EndlessBoomField> replaceWithEndless(
+            EndlessFactory factory, Runnable guiReset) {
+        return replace(factory::create, guiReset, created -> {
+            logic = null;
+            endless = created;
+        });
+    }
+
+    private <G extends GUIToLogic> CompletableFuture<G> replace(
+            Factory<G> factory, Runnable guiReset, Consumer<G> install) {
+        CompletableFuture<G> result = new CompletableFuture<>();
+        commands.add(() -> {
+            List<Runnable> held = new ArrayList<>();
+            heldEvents = held;
+            G created;
+            try {
+                created = factory.create(this);
+            } catch (Throwable e) {
+                dropHeldEvents();
+                result.completeExceptionally(e);
+                return;
+            }
+            heldEvents = null;
+            long id = ++installedGame;
+            enqueue(() -> shownGame = id);
+            if (guiReset != null) {
+                enqueue(guiReset);
+            }
+            for (Runnable event : held) {
+                enqueue(event);
+            }
+            install.accept(created);
+            moves = created;
+            result.complete(created);
+        });
+        return result;
+    }
+
+    /**
+     * Runs a task against the current game on the engine thread, after
+     * every command queued before it.
+     * @param task work to run
+     * @param <T> result type
+     * @return completes with the task's result or exception (on the engine
+     * thread, so gui work should be passed on with invokeLater)
+     */
+    public <T> CompletableFuture<T> submit(Task<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        commands.add(() -> {
+            try {
+                if (logic == null) {
+                    throw new IllegalStateException("No game is running");
+                }
+                result.complete(task.run(logic));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs work against the current endless game on the engine thread, for
+     * example moving its viewport. Does nothing if a normal game is
+     * running.
+     * @param work work to run
+     */
+    public void submitEndless(Consumer<EndlessBoomField> work) {
+        commands.add(() -> {
+            if (endless != null) {
+                work.accept(endless);
+            }
+        });
+    }
+
+    @Override
+    public void uncoverSelectedCell(int row, int col) {
+        long game = shownGame;
+        commands.add(() -> {
+            if (isCurrent(game)) {
+                moves.uncoverSelectedCell(row, col);
+            }
+        });
+    }
+
+    @Override
+    public void toggleFlag(int row, int col) {
+        long game = shownGame;
+        commands.add(() -> {
+            if (isCurrent(game)) {
+                moves.toggleFlag(row, col);
+            }
+        });
+    }
+
+    @Override
+    public void chord(int row, int col) {
+        long game = shownGame;
+        commands.add(() -> {
+            if (isCurrent(game)) {
+                moves.chord(row, col);
+            }
+        });
+    }
+
+    /**
+     * Whether a click made while a game was on screen still belongs to the
+     * game the engine is running.
+     */
+    private boolean isCurrent(long game) {
+        return moves != null && game == installedGame;
+    }
+
+    /**
+     * Version of the latest delta the engine has published.
+     * @return published version
+     */
+    public long getPublishedVersion() {
+        return publishedVersion;
+    }
+
+    /**
+     * Version of the latest delta the EDT has applied. Once it equals the
+     * published version the gui shows the engine's board.
+     * @return applied version
+     */
+    public long getAppliedVersion() {
+        return appliedVersion;
+    }
+
+    /**
+     * Stops the frame timer and the engine thread. Commands still queued
+     * are dropped.
+     */
+    public void shutdown() {
+        frameTimer.stop();
+        engineThread.interrupt();
+    }
+
+    private void runCommands() {
+        while (true) {
+            Runnable command;
+            try {
+                command = commands.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                command.run();
+            } catch (Throwable e) {
+                // a bad command must not take the engine down with it, nor
+                // leave the next game's callbacks held back
+                if (heldEvents != null) {
+                    dropHeldEvents();
+                }
+                DebugLog.error(() -> "Engine command failed", e);
+            }
+        }
+    }
+
+    /**
+     * Throws away the callbacks held back for a game that was never
+     * installed. The dropped deltas will never be applied, so the gui is
+     * told to count them as done.
+     */
+    private void dropHeldEvents() {
+        heldEvents = null;
+        long version = publishedVersion;
+        enqueue(() -> appliedVersion = version);
+    }
+
+    /**
+     * Applies everything the engine has queued since the last frame, in
+     * order. The board panel only asks for repaints here, which Swing
+     * merges into one paint. showGameOver opens a modal dialog that keeps
+     * the EDT busy until it closes, so the drain guards against being
+     * re-entered by the timer in the meantime. Once the queue is empty
+     * the timer is stopped until the next callback.
+     */
+    private void drainGuiEvents() {
+        if (draining) {
+            return;
+        }
+        draining = true;
+        try {
+            Runnable event;
+            while ((event = guiEvents.poll()) != null) {
+                event.run();
+            }
+        } finally {
+            draining = false;
+        }
+        frameTimer.stop();
+        frameScheduled.set(false);
+        // a callback queued since the last poll saw the timer still
+        // scheduled and left it to us
+        if (!guiEvents.isEmpty() && frameScheduled.compareAndSet(false, true)) {
+            frameTimer.start();
+        }
+    }
+
+    /**
+     * Queues work for the EDT and makes sure a frame is coming to drain it.
+     * Only the first event after the timer stopped starts it again.
+     */
+    private void enqueue(Runnable event) {
+        guiEvents.add(event);
+        if (frameScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(frameTimer::start);
+        }
+    }
+
+    // LogicToGUI, called by the game on the engine thread
+
+    /**
+     * Queues a callback for the EDT, or holds it back while replaceGame is
+     * still building the game it came from.
+     */
+    private void post(Runnable event) {
+        if (heldEvents != null) {
+            heldEvents.add(event);
+        } else {
+            enqueue(event);
+        }
+    }
+
+    @Override
+    public void updateFlagsUsed(int flags) {
+        post(() -> gui.updateFlagsUsed(flags));
+    }
+
+    @Override
+    public void updateCell(int row, int col, boolean hasBoom, boolean flagged,
+                           boolean hidden, int neighboringBooms) {
+        post(() -> gui.updateCell(row, col, hasBoom, flagged, hidden,
+                neighboringBooms));
+    }
+
+    @Override
+    public void updateCells(BoardDelta delta) {
+        BoardDelta published = delta.copy();
+        long version = ++publishedVersion;
+        post(() -> {
+            gui.updateCells(published);
+            appliedVersion = version;
+        });
+    }
+
+    @Override
+    public void showGameOver(boolean won) {
+        post(() -> gui.showGameOver(won));
+    }
+
+    @Override
+    public void refreshBoard() {
+        post(gui::refreshBoard);
+    }
+
+    /**
+     * Runs something on the EDT once the gui has caught up with every
+     * callback the engine has queued so far. Called from a task (or a
+     * future completed by one), this runs after the task's board updates.
+     * @param action work to run on the EDT
+     */
+    public void afterGuiUpdates(Runnable action) {
+        enqueue(action);
+    }
+}
@@ -0,0 +1,110 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+
+/**
+ * This class holds the game's Java Flight Recorder events, so a recording
+ * of a real session shows where the time goes: moves, board generation,
+ * board paints and the time from a click to the next painted frame. The
+ * events cost next to nothing while no recording is running. Record with
+ * for example:
+ * <pre>java -XX:StartFlightRecording:filename=boomfield.jfr MainLauncher</pre>
+ * and open the file in JDK Mission Control (the events are under
+ * "BoomField") or print them with "jfr print --categories BoomField".
+ */
+public final class GameEvents {
+
+    private GameEvents() {
+    }
+
+    /**
+     * One move handled by BoomFieldLogic, from the click reaching the logic
+     * until its changes have been sent to the gui.
+     */
+    @Name("boomfield.Move")
+    @Label("Move")
+    @Category("BoomField")
+    @Description("A move handled by the game logic")
+    @StackTrace(false)
+    public static final class Move extends Event {
+        @Label("Operation")
+        String op;
+
+        @Label("Row")
+        int row;
+
+        @Label("Column")
+        int col;
+
+        @Label("Cells Revealed")
+        @Description("Safe cells uncovered by the move, including the flood fill")
+        int cellsRevealed;
+
+        @Label("Game Over")
+        boolean gameOver;
+    }
+
+    /**
+     * One phase of generating a board: planting the booms or counting the
+     * neighbors.
+     */
+    @Name("boomfield.BoardGeneration")
+    @Label("Board Generation")
+    @Category("BoomField")
+    @StackTrace(false)
+    public static final class Generation extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Cells")
+        int cells;
+
+        @Label("Booms")
+        int booms;
+
+        @Label("Parallel")
+        boolean parallel;
+    }
+
+    /**
+     * One call of BoardPanel.paintComponent.
+     */
+    @Name("boomfield.Paint")
+    @Label("Board Paint")
+    @Category("BoomField")
+    @StackTrace(false)
+    public static final class Paint extends Event {
+        @Label("Cells Drawn")
+        int cellsDrawn;
+
+        @Label("Clip Width")
+        int clipWidth;
+
+        @Label("Clip Height")
+        int clipHeight;
+    }
+
+    /**
+     * Time from a mouse press on the board to the end of the first board
+     * paint that shows the move, which is when the player sees the result
+     * (the move goes through the engine thread and the next frame on the
+     * way).
+     */
+    @Name("boomfield.InputLatency")
+    @Label("Input Latency")
+    @Category("BoomField")
+    @StackTrace(false)
+    public static final class InputLatency extends Event {
+        @Label("Button")
+        String button;
+
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+}
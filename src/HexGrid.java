@@ -0,0 +1,46 @@
+/**
+ * This class holds the neighbor offsets for our pointy-top hex grid with
+ * odd rows shifted right (the same layout BoardPanel draws). The offsets
+ * are precomputed once for even and odd rows so neighbor lookups never
+ * allocate, which matters for the flood fill where a single click can
+ * visit hundreds of thousands of cells.
+ */
+public final class HexGrid {
+
+    /** Row offsets of the six neighbors, shared by even and odd rows. */
+    static final int[] ROW_OFFSETS = { -1, -1, 0, 0, 1, 1 };
+
+    /** Column offsets of the six neighbors for cells on even rows. */
+    static final int[] EVEN_COL_OFFSETS = { 0, -1, -1, 1, 0, -1 };
+
+    /** Column offsets of the six neighbors for cells on odd rows. */
+    static final int[] ODD_COL_OFFSETS = { 0, 1, -1, 1, 0, 1 };
+
+    private HexGrid() {
+    }
+
+    /**
+     * Writes the flat indices of every in-bounds neighbor of a cell into
+     * the given buffer.
+     * @param index flat index of the cell (row * cols + col)
+     * @param rows number of rows on the board
+     * @param cols number of cols on the board
+     * @param out buffer with room for at least six indices
+     * @return number of neighbors written
+     */
+    public static int neighbors(int index, int rows, int cols, int[] out) {
+        int row = index / cols;
+        int col = index - row * cols;
+        int[] colOffsets = (row & 1) == 0 ? EVEN_COL_OFFSETS : ODD_COL_OFFSETS;
+
+        int count = 0;
+        for (int k = 0; k < 6; k++) {
+            int nr = row + ROW_OFFSETS[k];
+            int nc = col + colOffsets[k];
+            if (nr >= 0 && nr < rows && nc >= 0 && nc < cols) {
+                out[count++] = nr * cols + nc;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,582 @@
+import java.util.BitSet;
+
+
+/**
+ * This class works out which covered cells are provably safe and which are
+ * provably booms from what the player can see, for the Hint button and the
+ * "solver" batch strategy. It keeps its own copy of the visible board, fed
+ * with the same deltas the gui gets, and only ever looks at what a player
+ * could see (boom bits and counts of covered cells are masked off).
+ * <p>Every uncovered number is a constraint on its covered neighbors
+ * (HexGrid topology). Deductions are made in three steps, cheapest first:</p>
+ * <ol>
+ *     <li>single cell - a number with no booms left makes all its unknown
+ *     neighbors safe, one with as many booms left as unknown neighbors
+ *     makes them all booms</li>
+ *     <li>subset - if the unknowns of one number are a subset of another's,
+ *     the cells only the second one touches hold the difference</li>
+ *     <li>enumeration - when both get stuck, every boom layout of a small
+ *     group of frontier cells (at most MAX_GROUP) is tried against the
+ *     numbers around it, and cells that are the same in all of them are
+ *     decided</li>
+ * </ol>
+ * <p>The work is incremental. A changed cell only queues the numbers next
+ * to it, and a deduction only queues the numbers next to the decided cell,
+ * so after a move the solver re-examines the frontier that move touched
+ * and never rescans the board. The player's flags are not trusted, since
+ * they may be wrong.</p>
+ */
+public class HexSolver {
+
+    /** Largest group of unknown cells the enumeration step will try. */
+    static final int MAX_GROUP = 20;
+
+    private static final int UNCOVERED_BOOM = 0x0F;
+
+    private final int rows;
+    private final int cols;
+
+    // visible state: HIDDEN/FLAGGED bits, count in the high nibble when
+    // uncovered (UNCOVERED_BOOM there for an uncovered boom)
+    private final byte[] visible;
+
+    // frontier bitsets
+    private final BitSet knownBooms;
+    private final BitSet knownSafe;
+
+    // numbers waiting for the single cell rule, then the subset rule, then
+    // enumeration; each queue has a bitset so a number is queued only once
+    private final IntQueue singleQueue = new IntQueue(64);
+    private final BitSet inSingleQueue;
+    private final IntQueue subsetQueue = new IntQueue(64);
+    private final BitSet inSubsetQueue;
+    private final IntQueue stuckQueue = new IntQueue(64);
+    private final BitSet inStuckQueue;
+
+    // deduced cells not handed out yet
+    private final IntQueue safeHints = new IntQueue(64);
+    private final IntQueue boomHints = new IntQueue(64);
+
+    // scratch arrays for the rules (never held across a decide call)
+    private final int[] scratch = new int[6];
+    private final int[] cellsA = new int[6];
+    private final int[] cellsB = new int[6];
+    private final int[] sharedNumbers = new int[6];
+    private final int[] queueScratch = new int[6];
+
+    /**
+     * Builds a solver for a board that is still entirely covered.
+     * @param rows number of rows
+     * @param cols number of cols
+     */
+    public HexSolver(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        int size = BoardStorage.checkedSize(rows, cols);
+        this.visible = new byte[size];
+        java.util.Arrays.fill(visible, (byte) BoardStorage.HIDDEN);
+        this.knownBooms = new BitSet(size);
+        this.knownSafe = new BitSet(size);
+        this.inSingleQueue = new BitSet(size);
+        this.inSubsetQueue = new BitSet(size);
+        this.inStuckQueue = new BitSet(size);
+    }
+
+    /**
+     * Builds a solver from the visible state of a game in progress.
+     * @param view the game
+     * @return solver caught up with the game
+     */
+    public static HexSolver fromView(BoardView view) {
+        HexSolver solver = new HexSolver(view.getRows(), view.getCols());
+        for (int r = 0; r < view.getRows(); r++) {
+            for (int c = 0; c < view.getCols(); c++) {
+                int state = 0;
+                if (view.isHidden(r, c)) {
+                    state |= BoardStorage.HIDDEN;
+                    if (view.isFlagged(r, c)) {
+                        state |= BoardStorage.FLAGGED;
+                    }
+                } else {
+                    int number = view.getVisibleNumber(r, c);
+                    state |= number < 0 ? BoardStorage.BOOM
+                            : number << BoardStorage.COUNT_SHIFT;
+                }
+                solver.observe(r * view.getCols() + c, state);
+            }
+        }
+        return solver;
+    }
+
+    /**
+     * Takes in every cell of a delta from the logic layer.
+     * @param delta changed cells
+     */
+    public void observe(BoardDelta delta) {
+        for (int i = 0; i < delta.size(); i++) {
+            observe(delta.indexAt(i), delta.stateAt(i));
+        }
+    }
+
+    /**
+     * Takes in the new state of a cell, keeping only what a player could
+     * see, and queues the numbers around it if the cell was uncovered.
+     * @param index flat cell index
+     * @param state packed state (see BoardStorage)
+     */
+    public void observe(int index, int state) {
+        int shown;
+        if ((state & BoardStorage.HIDDEN) != 0) {
+            shown = state & (BoardStorage.HIDDEN | BoardStorage.FLAGGED);
+        } else if ((state & BoardStorage.BOOM) != 0) {
+            shown = UNCOVERED_BOOM << BoardStorage.COUNT_SHIFT;
+        } else {
+            shown = state & (BoardStorage.COUNT_MASK << BoardStorage.COUNT_SHIFT);
+        }
+        int before = visible[index];
+        visible[index] = (byte) shown;
+
+        boolean wasHidden = (before & BoardStorage.HIDDEN) != 0;
+        if (wasHidden && !isHidden(index)) {
+            // the cell left the frontier, so it no longer needs a hint,
+            // and it and the numbers around it have fewer unknowns now
+            queueSingle(index);
+            queueNumbersAround(index);
+        } else if (!wasHidden && isHidden(index)) {
+            // covered again by an undo, but what it showed is still true
+            int shownBefore = (before >> BoardStorage.COUNT_SHIFT)
+                    & BoardStorage.COUNT_MASK;
+            decide(index, shownBefore == UNCOVERED_BOOM);
+        } else if (knownBooms.get(index) && (before & BoardStorage.FLAGGED) != 0
+                && (shown & BoardStorage.FLAGGED) == 0) {
+            boomHints.add(index);   // unflagged a known boom
+        }
+    }
+
+    /**
+     * Finds a covered cell that is certainly safe to uncover.
+     * @return flat cell index, or -1 if none can be deduced
+     */
+    public int nextSafeCell() {
+        propagate();
+        int cell = pollHint(safeHints, false);
+        while (cell < 0 && enumerateStuck()) {
+            propagate();
+            cell = pollHint(safeHints, false);
+        }
+        return cell;
+    }
+
+    /**
+     * Finds a cell that is certainly a boom but not flagged yet.
+     * @return flat cell index, or -1 if none can be deduced
+     */
+    public int nextUnflaggedBoom() {
+        propagate();
+        int cell = pollHint(boomHints, true);
+        while (cell < 0 && enumerateStuck()) {
+            propagate();
+            cell = pollHint(boomHints, true);
+        }
+        return cell;
+    }
+
+    public boolean isKnownSafe(int index) {
+        return knownSafe.get(index);
+    }
+
+    public boolean isKnownBoom(int index) {
+        return knownBooms.get(index);
+    }
+
+    /**
+     * Returns the first queued cell that still needs the hint, dropping the
+     * ones the player has dealt with. The cell stays queued, so repeated
+     * hints keep pointing at it until the player acts on it.
+     */
+    private int pollHint(IntQueue hints, boolean booms) {
+        while (!hints.isEmpty()) {
+            int cell = hints.peek();
+            boolean stillUseful = isHidden(cell) && (booms
+                    ? knownBooms.get(cell) && !isFlagged(cell)
+                    : knownSafe.get(cell));
+            if (stillUseful) {
+                return cell;
+            }
+            hints.poll();
+        }
+        return -1;
+    }
+
+    /**
+     * Runs the single cell and subset rules until neither finds anything
+     * new. The subset rule only runs once the single cell rule is out of
+     * work, since it costs more.
+     */
+    private void propagate() {
+        while (!singleQueue.isEmpty() || !subsetQueue.isEmpty()) {
+            while (!singleQueue.isEmpty()) {
+                int number = singleQueue.poll();
+                inSingleQueue.clear(number);
+                applySingleRule(number);
+            }
+            if (!subsetQueue.isEmpty()) {
+                int number = subsetQueue.poll();
+                inSubsetQueue.clear(number);
+                applySubsetRule(number);
+            }
+        }
+    }
+
+    private void applySingleRule(int number) {
+        if (countOf(number) < 0) {
+            return;     // covered again since it was queued
+        }
+        int left = boomsLeft(number);
+        int unknown = unknownsAround(number, cellsA);
+        if (unknown == 0) {
+            return;
+        }
+
+        if (left == 0 || left == unknown) {
+            for (int k = 0; k < unknown; k++) {
+                decide(cellsA[k], left != 0);
+            }
+        } else if (!inSubsetQueue.get(number)) {
+            inSubsetQueue.set(number);
+            subsetQueue.add(number);
+        }
+    }
+
+    /**
+     * Compares a number with every other number that shares one of its
+     * unknown cells. When the unknowns of one are a subset of the other's,
+     * the cells only the bigger one touches hold the difference of their
+     * booms left, which decides them if it is 0 or all of them. Numbers
+     * that get nowhere wait for the enumeration step.
+     */
+    private void applySubsetRule(int a) {
+        if (countOf(a) < 0) {
+            return;
+        }
+        int aLeft = boomsLeft(a);
+        int aCount = unknownsAround(a, cellsA);
+        if (aCount == 0) {
+            return;
+        }
+
+        for (int k = 0; k < aCount; k++) {
+            int found = HexGrid.neighbors(cellsA[k], rows, cols, sharedNumbers);
+            for (int j = 0; j < found; j++) {
+                int b = sharedNumbers[j];
+                if (b == a || countOf(b) < 0) {
+                    continue;
+                }
+                int bCount = unknownsAround(b, cellsB);
+                int bLeft = boomsLeft(b);
+                boolean decided = false;
+                if (bCount > aCount && containsAll(cellsB, bCount, cellsA, aCount)) {
+                    decided = decideDifference(cellsB, bCount, cellsA, aCount,
+                            bLeft - aLeft);
+                } else if (aCount > bCount
+                        && containsAll(cellsA, aCount, cellsB, bCount)) {
+                    decided = decideDifference(cellsA, aCount, cellsB, bCount,
+                            aLeft - bLeft);
+                }
+                if (decided) {
+                    return;
+                }
+            }
+        }
+        if (!inStuckQueue.get(a)) {
+            inStuckQueue.set(a);
+            stuckQueue.add(a);
+        }
+    }
+
+    private static boolean containsAll(int[] big, int bigCount,
+                                       int[] small, int smallCount) {
+        for (int i = 0; i < smallCount; i++) {
+            boolean found = false;
+            for (int j = 0; j < bigCount && !found; j++) {
+                found = big[j] == small[i];
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decides the cells of big that are not in small, if they hold no
+     * booms or only booms.
+     * @return true if anything was decided
+     */
+    private boolean decideDifference(int[] big, int bigCount, int[] small,
+                                     int smallCount, int booms) {
+        int size = bigCount - smallCount;
+        if (booms != 0 && booms != size) {
+            return false;
+        }
+        // copy first, deciding queues numbers and reuses the scratch arrays
+        int[] difference = new int[size];
+        int n = 0;
+        for (int i = 0; i < bigCount; i++) {
+            if (!contains(small, smallCount, big[i])) {
+                difference[n++] = big[i];
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            decide(difference[i], booms != 0);
+        }
+        return true;
+    }
+
+    private static boolean contains(int[] cells, int count, int cell) {
+        for (int i = 0; i < count; i++) {
+            if (cells[i] == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Enumerates the groups around the numbers the other rules gave up on,
+     * one at a time, until one of them decides something.
+     * @return true if any cell was decided
+     */
+    private boolean enumerateStuck() {
+        while (!stuckQueue.isEmpty()) {
+            int number = stuckQueue.poll();
+            inStuckQueue.clear(number);
+            if (countOf(number) > 0 && unknownsAround(number, cellsA) > 0
+                    && enumerateGroup(number)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects up to MAX_GROUP unknown cells around a number, together with
+     * every number whose unknowns all fall inside the group, and tries
+     * every boom layout of the group against those numbers. Leaving out
+     * numbers that reach outside the group only allows more layouts, so
+     * a cell that comes out the same in all of them is still certain.
+     */
+    private boolean enumerateGroup(int start) {
+        int[] cells = new int[MAX_GROUP];
+        int cellCount = 0;
+        int[] numbers = new int[MAX_GROUP * 6];
+        int[] masks = new int[numbers.length];
+        int[] lefts = new int[numbers.length];
+        int numberCount = 0;
+        BitSet seen = new BitSet();
+
+        IntQueue pending = new IntQueue(16);
+        pending.add(start);
+        seen.set(start);
+        int[] around = new int[6];
+        int[] unknown = new int[6];
+
+        while (!pending.isEmpty()) {
+            int number = pending.poll();
+            int count = unknownsAround(number, unknown);
+            int added = 0;
+            for (int k = 0; k < count; k++) {
+                if (!contains(cells, cellCount, unknown[k])) {
+                    added++;
+                }
+            }
+            if (cellCount + added > MAX_GROUP) {
+                continue;
+            }
+
+            int mask = 0;
+            for (int k = 0; k < count; k++) {
+                int local = indexIn(cells, cellCount, unknown[k]);
+                if (local < 0) {
+                    local = cellCount;
+                    cells[cellCount++] = unknown[k];
+
+                    // numbers around a new cell may join the group too
+                    int found = HexGrid.neighbors(unknown[k], rows, cols, around);
+                    for (int j = 0; j < found; j++) {
+                        if (countOf(around[j]) >= 0 && !seen.get(around[j])) {
+                            seen.set(around[j]);
+                            pending.add(around[j]);
+                        }
+                    }
+                }
+                mask |= 1 << local;
+            }
+            numbers[numberCount] = number;
+            masks[numberCount] = mask;
+            lefts[numberCount] = boomsLeft(number);
+            numberCount++;
+        }
+
+        long[] boomCounts = new long[cellCount];
+        long layouts = countLayouts(0, 0, cellCount, masks, lefts, numberCount,
+                new int[numberCount], boomCounts);
+        if (layouts == 0) {
+            return false;   // the visible numbers disagree, nothing is certain
+        }
+
+        boolean decided = false;
+        for (int i = 0; i < cellCount; i++) {
+            if (boomCounts[i] == 0 || boomCounts[i] == layouts) {
+                decide(cells[i], boomCounts[i] != 0);
+                decided = true;
+            }
+        }
+        return decided;
+    }
+
+    private static int indexIn(int[] cells, int count, int cell) {
+        for (int i = 0; i < count; i++) {
+            if (cells[i] == cell) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the boom layouts of cells [cell, cellCount) that satisfy every
+     * number, given the layout of the cells before it (bit set = boom), and
+     * adds up how many layouts put a boom on each cell.
+     * @return number of valid layouts
+     */
+    private static long countLayouts(int cell, int layout, int cellCount,
+                                     int[] masks, int[] lefts, int numberCount,
+                                     int[] placed, long[] boomCounts) {
+        if (cell == cellCount) {
+            for (int i = 0; i < numberCount; i++) {
+                if (placed[i] != lefts[i]) {
+                    return 0;
+                }
+            }
+            for (int i = 0; i < cellCount; i++) {
+                if ((layout & (1 << i)) != 0) {
+                    boomCounts[i]++;
+                }
+            }
+            return 1;
+        }
+
+        long total = 0;
+        int bit = 1 << cell;
+        int later = -(bit << 1);    // cells after this one, within the mask
+        for (int boom = 0; boom <= 1; boom++) {
+            boolean possible = true;
+            for (int i = 0; i < numberCount && possible; i++) {
+                if ((masks[i] & bit) == 0) {
+                    continue;
+                }
+                int now = placed[i] + boom;
+                int stillOpen = Integer.bitCount(masks[i] & later);
+                possible = now <= lefts[i] && now + stillOpen >= lefts[i];
+            }
+            if (!possible) {
+                continue;
+            }
+            for (int i = 0; i < numberCount; i++) {
+                if ((masks[i] & bit) != 0) {
+                    placed[i] += boom;
+                }
+            }
+            total += countLayouts(cell + 1, layout | (boom * bit), cellCount,
+                    masks, lefts, numberCount, placed, boomCounts);
+            for (int i = 0; i < numberCount; i++) {
+                if ((masks[i] & bit) != 0) {
+                    placed[i] -= boom;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Booms a number still has to account for among its unknown neighbors.
+     */
+    private int boomsLeft(int number) {
+        int found = HexGrid.neighbors(number, rows, cols, scratch);
+        int left = countOf(number);
+        for (int k = 0; k < found; k++) {
+            if (knownBooms.get(scratch[k])) {
+                left--;
+            }
+        }
+        return left;
+    }
+
+    /**
+     * Lists the unknown (covered and undecided) neighbors of a cell.
+     * @return number of unknown neighbors written to out
+     */
+    private int unknownsAround(int number, int[] out) {
+        int found = HexGrid.neighbors(number, rows, cols, scratch);
+        int count = 0;
+        for (int k = 0; k < found; k++) {
+            if (isUnknown(scratch[k])) {
+                out[count++] = scratch[k];
+            }
+        }
+        return count;
+    }
+
+    private void decide(int cell, boolean boom) {
+        if (boom) {
+            knownBooms.set(cell);
+            if (!isFlagged(cell)) {
+                boomHints.add(cell);
+            }
+        } else {
+            knownSafe.set(cell);
+            safeHints.add(cell);
+        }
+        queueNumbersAround(cell);
+    }
+
+    private void queueNumbersAround(int cell) {
+        int found = HexGrid.neighbors(cell, rows, cols, queueScratch);
+        for (int k = 0; k < found; k++) {
+            queueSingle(queueScratch[k]);
+        }
+    }
+
+    private void queueSingle(int number) {
+        if (countOf(number) > 0 && !inSingleQueue.get(number)) {
+            inSingleQueue.set(number);
+            singleQueue.add(number);
+        }
+    }
+
+    private boolean isHidden(int index) {
+        return (visible[index] & BoardStorage.HIDDEN) != 0;
+    }
+
+    private boolean isFlagged(int index) {
+        return (visible[index] & BoardStorage.FLAGGED) != 0;
+    }
+
+    private boolean isUnknown(int index) {
+        return isHidden(index) && !knownBooms.get(index) && !knownSafe.get(index);
+    }
+
+    /**
+     * The number shown on an uncovered cell.
+     * @return count, or -1 for covered cells and uncovered booms
+     */
+    private int countOf(int index) {
+        int state = visible[index];
+        if ((state & BoardStorage.HIDDEN) != 0) {
+            return -1;
+        }
+        int count = (state >> BoardStorage.COUNT_SHIFT) & BoardStorage.COUNT_MASK;
+        return count == UNCOVERED_BOOM ? -1 : count;
+    }
+}
@@ -12,7 +12,9 @@ public class InfoPanel extends JPanel {
     private final JLabel timeLabel;
     private final JLabel boomLabel;
     private final JComboBox<String> difficultyBox;
+    private final JCheckBox noGuessBox;
     private final JButton newGameButton;
+    private final JButton hintButton;
     private final JLabel flagLabel;
 
     private final Timer timer;
@@ -27,6 +29,10 @@ public class InfoPanel extends JPanel {
         difficultyBox = new JComboBox<>(new String[] { "Easy", "Medium", "Hard" });
         difficultyBox.setSelectedItem("Easy");
 
+        noGuessBox = new JCheckBox("No Guess");
+        noGuessBox.setOpaque(false);
+        noGuessBox.setToolTipText("Only deal boards that can be solved without guessing");
+
 
         timeLabel = new JLabel("Time: 00:00", SwingConstants.CENTER);
         timeLabel.setFont(timeLabel.getFont().deriveFont(Font.BOLD, 16f));
@@ -39,11 +45,14 @@ public class InfoPanel extends JPanel {
         flagLabel.setFont(timeLabel.getFont().deriveFont(Font.BOLD, 16f));
 
         newGameButton = new JButton("Start New Game");
+        hintButton = new JButton("Hint");
 
         add(difficultyBox);
+        add(noGuessBox);
         add(timeLabel);
         add(boomLabel);
         add(flagLabel);
+        add(hintButton);
         add(newGameButton);
 
         timer = new Timer(1000, e -> {
@@ -126,6 +135,15 @@ public class InfoPanel extends JPanel {
         boomLabel.setText("Buried Booms: " + count);
     }
 
+    /**
+     * Endless games have no boom count, so the label shows the share of
+     * cells that hide a boom instead.
+     * @param density chance of a boom in each cell
+     */
+    public void setBoomDensity(double density) {
+        boomLabel.setText("Boom Density: " + Math.round(density * 100) + "%");
+    }
+
 
     /**
      * Exposes the difficulty combo box to the JFrame
@@ -135,6 +153,14 @@ public class InfoPanel extends JPanel {
         return difficultyBox;
     }
 
+    /**
+     * Exposes the check box that asks for no guess boards to the JFrame
+     * @return no guess check box
+     */
+    public JCheckBox getNoGuessBox() {
+        return noGuessBox;
+    }
+
     /**
      * Exposes the JButton for starting a new game to the JFrame
      * @return new game button
@@ -142,4 +168,12 @@ public class InfoPanel extends JPanel {
     public JButton getNewGameButton() {
         return newGameButton;
     }
+
+    /**
+     * Exposes the JButton that asks the solver for a hint to the JFrame
+     * @return hint button
+     */
+    public JButton getHintButton() {
+        return hintButton;
+    }
 }
@@ -0,0 +1,87 @@
+import java.util.NoSuchElementException;
+
+
+/**
+ * A small first-in first-out queue of primitive ints backed by a growable
+ * ring buffer. I use it as the work list for the flood fill so that
+ * uncovering a huge open area neither recurses nor boxes every cell index.
+ * The buffer only grows (by doubling) and is kept between uses, so once it
+ * has warmed up it never allocates again.
+ */
+public final class IntQueue {
+
+    private int[] elements;
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * Builds an empty queue.
+     * @param initialCapacity starting capacity (rounded up to a power of 2)
+     */
+    public IntQueue(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(initialCapacity, 8) - 1) << 1;
+        elements = new int[capacity];
+    }
+
+    /**
+     * Adds a value to the tail of the queue.
+     * @param value value to add
+     */
+    public void add(int value) {
+        if (size == elements.length) {
+            grow();
+        }
+        elements[(head + size) & (elements.length - 1)] = value;
+        size++;
+    }
+
+    /**
+     * Removes and returns the value at the head of the queue.
+     * @return head value
+     */
+    public int poll() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int value = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return value;
+    }
+
+    /**
+     * Returns the head of the queue without removing it.
+     * @return head value
+     */
+    public int peek() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return elements[head];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empties the queue but keeps its buffer for reuse.
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        int[] bigger = new int[elements.length << 1];
+        int firstPart = elements.length - head;
+        System.arraycopy(elements, head, bigger, 0, firstPart);
+        System.arraycopy(elements, 0, bigger, firstPart, head);
+        elements = bigger;
+        head = 0;
+    }
+}
@@ -10,6 +10,26 @@ public interface LogicToGUI {
                     boolean hidden,
                     int neighboringBooms);
 
+    /**
+     * Batched version of updateCell that the logic layer uses for whole
+     * moves. The default unpacks the batch into one updateCell call per
+     * cell; the frame overrides it to apply the batch and repaint once.
+     * The delta is reused by the logic layer after this call returns.
+     * @param delta cells changed by the move
+     */
+    default void updateCells(BoardDelta delta) {
+        for (int i = 0; i < delta.size(); i++) {
+            int state = delta.stateAt(i);
+            boolean hasBoom = (state & BoardStorage.BOOM) != 0;
+            updateCell(delta.rowAt(i), delta.colAt(i),
+                    hasBoom,
+                    (state & BoardStorage.FLAGGED) != 0,
+                    (state & BoardStorage.HIDDEN) != 0,
+                    hasBoom ? -1 : (state >> BoardStorage.COUNT_SHIFT)
+                            & BoardStorage.COUNT_MASK);
+        }
+    }
+
     void showGameOver(boolean won);
 
     void refreshBoard();
@@ -8,9 +8,13 @@ import javax.swing.*;
  */
 public class MainLauncher {
     public static void main(String[] args) {
+        // images and sounds decode in the background while the window opens
+        AssetLoader.get().preloadAll();
         SwingUtilities.invokeLater(() -> {
             BoomFieldFrame frame = new BoomFieldFrame(15,15,1);
+            AssetLoader.get().mark("frame built");
             frame.setVisible(true);
+            AssetLoader.get().mark("window shown");
         });
     }
 }
@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+
+
+/**
+ * This is the board layout of a loaded save file. Instead of copying the
+ * file into a PackedBoard it reads and writes the bit planes of the mapped
+ * file in place (see BoardFile for the layout). The file is mapped
+ * read-only, and the first change swaps in a copy-on-write mapping
+ * (BoardFile.mapForWrites), so moves made on a loaded game only touch the
+ * pages they change and never write back to the save file.
+ */
+public class MappedBoard implements BoardStorage {
+
+    private final int rows;
+    private final int cols;
+    private final BoardFile.Header header;
+    private final Path path;
+    private final Object identity;
+    private final MappedByteBuffer loaded;
+    private MappedByteBuffer buffer;
+    private final int boomOffset;
+    private final int flagOffset;
+    private final int hiddenOffset;
+    private final int countOffset;
+
+    MappedBoard(BoardFile.Header header, MappedByteBuffer loaded, Path path,
+                Object identity) {
+        BoardFile.Layout layout = new BoardFile.Layout(header.rows * header.cols);
+        this.rows = header.rows;
+        this.cols = header.cols;
+        this.header = header;
+        this.path = path;
+        this.identity = identity;
+        this.loaded = loaded;
+        this.buffer = loaded;
+        this.boomOffset = (int) layout.boomOffset;
+        this.flagOffset = (int) layout.flagOffset;
+        this.hiddenOffset = (int) layout.hiddenOffset;
+        this.countOffset = (int) layout.countOffset;
+    }
+
+    /**
+     * The header the board was loaded with.
+     * @return save file header
+     */
+    public BoardFile.Header header() {
+        return header;
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public int cols() {
+        return cols;
+    }
+
+    @Override
+    public boolean hasBoom(int index) {
+        return getBit(boomOffset, index);
+    }
+
+    @Override
+    public void setBoom(int index, boolean hasBoom) {
+        ensureWritable();
+        setBit(boomOffset, index, hasBoom);
+    }
+
+    @Override
+    public boolean isFlagged(int index) {
+        return getBit(flagOffset, index);
+    }
+
+    @Override
+    public void setFlagged(int index, boolean flagged) {
+        ensureWritable();
+        setBit(flagOffset, index, flagged);
+    }
+
+    @Override
+    public boolean isHidden(int index) {
+        return getBit(hiddenOffset, index);
+    }
+
+    @Override
+    public void setHidden(int index, boolean hidden) {
+        ensureWritable();
+        setBit(hiddenOffset, index, hidden);
+    }
+
+    @Override
+    public int getNeighboringBooms(int index) {
+        if (hasBoom(index)) {
+            return -1;
+        }
+        int pair = buffer.get(countOffset + (index >> 1));
+        return (pair >> ((index & 1) * 4)) & COUNT_MASK;
+    }
+
+    @Override
+    public void setNeighboringBooms(int index, int count) {
+        ensureWritable();
+        int nibble = count < 0 ? 0 : count & COUNT_MASK;
+        int position = countOffset + (index >> 1);
+        int shift = (index & 1) * 4;
+        int pair = buffer.get(position);
+        pair = (pair & ~(COUNT_MASK << shift)) | (nibble << shift);
+        buffer.put(position, (byte) pair);
+    }
+
+    /**
+     * Whether the board still reads straight from the loaded mapping,
+     * that is nothing on it has been changed since it was loaded.
+     * @return true until the first change
+     */
+    public boolean isUnchanged() {
+        return buffer == loaded;
+    }
+
+    /**
+     * Another board over the same read-only mapping, as this board was
+     * when it was loaded. It shares the mapping until its own first
+     * change, so it costs no copy of the board.
+     * @return the board as loaded
+     */
+    public MappedBoard copyAsLoaded() {
+        return new MappedBoard(header, loaded, path, identity);
+    }
+
+    // swaps the read-only mapping for a writable one before the first change
+    private void ensureWritable() {
+        if (buffer != loaded) {
+            return;
+        }
+        try {
+            buffer = BoardFile.mapForWrites(path, identity, loaded);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot change loaded board " + path, e);
+        }
+    }
+
+    private boolean getBit(int offset, int index) {
+        return (buffer.get(offset + (index >> 3)) & (1 << (index & 7))) != 0;
+    }
+
+    private void setBit(int offset, int index, boolean on) {
+        int position = offset + (index >> 3);
+        int bits = buffer.get(position);
+        if (on) {
+            bits |= 1 << (index & 7);
+        } else {
+            bits &= ~(1 << (index & 7));
+        }
+        buffer.put(position, (byte) bits);
+    }
+}
@@ -0,0 +1,501 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * This class is an append-only record of every move made in a game, so
+ * games can be audited, replayed to any point and undone.
+ * <p>Each event is two varints: the cell index shifted left by OP_BITS
+ * with the op in the low bits, then the milliseconds since the previous
+ * event. A typical move on a 15x15 board takes 3 bytes. Undo is an event
+ * too, so the log never loses a move that was taken back.</p>
+ * <p>Every so often the journal also keeps a snapshot of the board (see
+ * endMove), and BoomFieldLogic.replay starts from the nearest usable
+ * snapshot instead of from move zero. Only the first snapshot holds the
+ * whole board, and for a loaded game even that is just the save file's
+ * mapping (see MappedBoard.copyAsLoaded). Later snapshots only hold the
+ * cells changed since the one before, unless those add up to more than
+ * the board since the last whole one, so snapshots cost about as much
+ * memory as the moves themselves rather than a board each.</p>
+ * <p>For undo the journal keeps the cells each move changed and the
+ * counters from before it, so undoing a move only touches those
+ * cells.</p>
+ */
+public class MoveJournal {
+
+    public static final int UNCOVER = 0;
+    public static final int FLAG = 1;
+    public static final int UNDO = 2;
+    public static final int CHORD = 3;
+
+    private static final int OP_BITS = 2;
+    private static final int OP_MASK = (1 << OP_BITS) - 1;
+
+    // a snapshot is taken once the replay work since the last one (moves
+    // plus changed cells) reaches 1/SNAPSHOT_RATIO of the board
+    private static final int SNAPSHOT_RATIO = 4;
+    private static final int MIN_SNAPSHOT_WORK = 64;
+
+    /**
+     * Receives the events of a journal in order, see forEachEvent.
+     */
+    public interface EventVisitor {
+        /**
+         * @param event event number, starting at 0
+         * @param op UNCOVER, FLAG, UNDO or CHORD
+         * @param index flat cell index of the move (0 for UNDO)
+         * @param timeMillis wall clock time of the event
+         */
+        void visit(int event, int op, int index, long timeMillis);
+    }
+
+    /**
+     * The board and its game state after a given event. The board is
+     * either the save file the game was loaded from, the packed state of
+     * every cell, or only the cells changed since the previous snapshot.
+     */
+    static final class Snapshot {
+        final int event;        // number of events applied before it
+        final int logOffset;    // log position of the next event
+        final int depth;        // moves not undone at this point
+        final BoardFile.Header header;
+        final MappedBoard loaded;   // loaded save file, never changed
+        final int[] cells;      // changed cells, null if states is whole
+        final byte[] states;    // packed state of those (or every) cells
+
+        Snapshot(int event, int logOffset, int depth, BoardFile.Header header,
+                 MappedBoard loaded, int[] cells, byte[] states) {
+            this.event = event;
+            this.logOffset = logOffset;
+            this.depth = depth;
+            this.header = header;
+            this.loaded = loaded;
+            this.cells = cells;
+            this.states = states;
+        }
+
+        boolean isWhole() {
+            return cells == null;
+        }
+    }
+
+    /**
+     * What undo needs for one move: where its changed cells start in the
+     * changed cell list and the game state from before the move.
+     */
+    private static final class UndoRecord {
+        final int op;
+        final int cellsFrom;
+        final BoardFile.Header before;
+
+        UndoRecord(int op, int cellsFrom, BoardFile.Header before) {
+            this.op = op;
+            this.cellsFrom = cellsFrom;
+            this.before = before;
+        }
+    }
+
+    private final long startMillis;
+    private byte[] log = new byte[256];
+    private int logLength = 0;
+    private int events = 0;
+    private long lastMillis;
+
+    private final List<Snapshot> snapshots = new ArrayList<>();
+    private final int snapshotWork;
+    private int workSinceSnapshot = 0;
+    // every cell changed since the last snapshot (with repeats), and the
+    // changed cells stored since the last whole snapshot
+    private int[] dirtyCells = new int[64];
+    private int dirtyCount = 0;
+    private long cellsSinceWhole = 0;
+
+    private final List<UndoRecord> undoStack = new ArrayList<>();
+    private int[] changedCells = new int[64];
+    private int changedCount = 0;
+    private boolean inMove = false;
+
+    /**
+     * Starts a journal from the current state of a game. A loaded game
+     * that has not changed yet keeps pointing at its save file instead of
+     * being copied.
+     * @param board board of the game
+     * @param header game state of the game
+     */
+    MoveJournal(BoardStorage board, BoardFile.Header header) {
+        this(System.currentTimeMillis(), board.size());
+        if (board instanceof MappedBoard && ((MappedBoard) board).isUnchanged()) {
+            snapshots.add(new Snapshot(events, logLength, 0, header,
+                    ((MappedBoard) board).copyAsLoaded(), null, null));
+        } else {
+            snapshots.add(wholeSnapshot(board, header));
+        }
+    }
+
+    private MoveJournal(long startMillis, int boardSize) {
+        this.startMillis = startMillis;
+        this.lastMillis = startMillis;
+        this.snapshotWork = Math.max(MIN_SNAPSHOT_WORK,
+                boardSize / SNAPSHOT_RATIO);
+    }
+
+    /**
+     * Number of events (moves and undos) recorded so far.
+     * @return event count
+     */
+    public int eventCount() {
+        return events;
+    }
+
+    /**
+     * Number of moves that can still be undone.
+     * @return undo depth
+     */
+    public int undoDepth() {
+        return undoStack.size();
+    }
+
+    /**
+     * Time the journal was started.
+     * @return wall clock time in milliseconds
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Number of bytes used by the event log.
+     * @return log size in bytes
+     */
+    public int logSize() {
+        return logLength;
+    }
+
+    /**
+     * Starts recording a move. Every cell passed to cellChanged until
+     * endMove belongs to this move.
+     * @param op UNCOVER, FLAG or CHORD
+     * @param index flat cell index of the move
+     * @param before game state before the move
+     */
+    void beginMove(int op, int index, BoardFile.Header before) {
+        appendEvent(op, index);
+        undoStack.add(new UndoRecord(op, changedCount, before));
+        inMove = true;
+    }
+
+    /**
+     * Records a changed cell. Every change goes into the next snapshot,
+     * but only the changes of the current move are kept for undo, not
+     * the ones made by an undo itself.
+     * @param index flat cell index
+     */
+    void cellChanged(int index) {
+        if (dirtyCount == dirtyCells.length) {
+            dirtyCells = Arrays.copyOf(dirtyCells, dirtyCount * 2);
+        }
+        dirtyCells[dirtyCount++] = index;
+        if (!inMove) {
+            return;
+        }
+        if (changedCount == changedCells.length) {
+            changedCells = Arrays.copyOf(changedCells, changedCount * 2);
+        }
+        changedCells[changedCount++] = index;
+    }
+
+    /**
+     * Finishes the current move.
+     * @return true if the board should be snapshotted now
+     */
+    boolean endMove() {
+        inMove = false;
+        UndoRecord record = undoStack.get(undoStack.size() - 1);
+        workSinceSnapshot += 1 + changedCount - record.cellsFrom;
+        return workSinceSnapshot >= snapshotWork;
+    }
+
+    /**
+     * Records an undo and hands the undone move to the caller, which
+     * restores the cells from undoCell and the state from the record.
+     * @return op of the undone move, or -1 if there is nothing to undo
+     */
+    int beginUndo() {
+        if (undoStack.isEmpty()) {
+            return -1;
+        }
+        appendEvent(UNDO, 0);
+        workSinceSnapshot += 1 + undoCellCount();
+        return undoStack.get(undoStack.size() - 1).op;
+    }
+
+    /**
+     * Number of cells changed by the move being undone.
+     * @return changed cell count
+     */
+    int undoCellCount() {
+        return changedCount - undoStack.get(undoStack.size() - 1).cellsFrom;
+    }
+
+    /**
+     * One of the cells changed by the move being undone.
+     * @param i position, from 0 to undoCellCount() - 1
+     * @return flat cell index
+     */
+    int undoCell(int i) {
+        return changedCells[undoStack.get(undoStack.size() - 1).cellsFrom + i];
+    }
+
+    /**
+     * Drops the undone move and returns the game state from before it.
+     * @return game state to restore
+     */
+    BoardFile.Header endUndo() {
+        UndoRecord record = undoStack.remove(undoStack.size() - 1);
+        changedCount = record.cellsFrom;
+        return record.before;
+    }
+
+    /**
+     * Keeps the board after the latest event: the cells changed since the
+     * previous snapshot, or the whole board once the changed cells since
+     * the last whole snapshot would outgrow it.
+     * @param board board of the game
+     * @param header game state of the game
+     */
+    void snapshot(BoardStorage board, BoardFile.Header header) {
+        int[] cells = Arrays.copyOf(dirtyCells, dirtyCount);
+        Arrays.sort(cells);
+        int distinct = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if (distinct == 0 || cells[i] != cells[distinct - 1]) {
+                cells[distinct++] = cells[i];
+            }
+        }
+        dirtyCount = 0;
+        workSinceSnapshot = 0;
+
+        if (cellsSinceWhole + distinct > board.size()) {
+            snapshots.add(wholeSnapshot(board, header));
+            cellsSinceWhole = 0;
+            return;
+        }
+        cells = Arrays.copyOf(cells, distinct);
+        byte[] states = new byte[distinct];
+        for (int i = 0; i < distinct; i++) {
+            states[i] = (byte) board.packedState(cells[i]);
+        }
+        snapshots.add(new Snapshot(events, logLength, undoStack.size(), header,
+                null, cells, states));
+        cellsSinceWhole += distinct;
+    }
+
+    private Snapshot wholeSnapshot(BoardStorage board, BoardFile.Header header) {
+        int size = board.size();
+        byte[] states = new byte[size];
+        for (int i = 0; i < size; i++) {
+            states[i] = (byte) board.packedState(i);
+        }
+        return new Snapshot(events, logLength, undoStack.size(), header, null,
+                null, states);
+    }
+
+    /**
+     * Rebuilds the board of the snapshot a replay starts from: the last
+     * whole snapshot at or before it, with the changed cells of every
+     * snapshot after that applied in order.
+     * @param plan replay plan from planReplay
+     * @return a new board, owned by the caller
+     */
+    BoardStorage restoreBoard(ReplayPlan plan) {
+        int whole = plan.position;
+        while (!snapshots.get(whole).isWhole()) {
+            whole--;
+        }
+        Snapshot first = snapshots.get(whole);
+        BoardStorage board = first.loaded != null
+                ? first.loaded.copyAsLoaded()
+                : new PackedBoard(first.header.rows, first.header.cols,
+                        first.states);
+        for (int s = whole + 1; s <= plan.position; s++) {
+            Snapshot changes = snapshots.get(s);
+            for (int i = 0; i < changes.cells.length; i++) {
+                board.setPackedState(changes.cells[i], changes.states[i] & 0xFF);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Works out how to rebuild the game as it was after a given number of
+     * events: the snapshot to start from and the moves to apply on top of
+     * it. Undos make this a little more than "latest snapshot before the
+     * event": the moves still standing at the target must start with all
+     * the moves that were standing at the snapshot, which is the case
+     * exactly when the undo depth never drops below the snapshot's depth
+     * in between.
+     * @param target number of events to replay
+     * @return the plan, see ReplayPlan
+     */
+    ReplayPlan planReplay(int target) {
+        if (target < 0 || target > events) {
+            throw new IllegalArgumentException("No event " + target
+                    + " in a journal of " + events + " events");
+        }
+        if (snapshots.isEmpty()) {
+            throw new IllegalStateException(
+                    "Journal was read from a stream and has no snapshots");
+        }
+        int base = snapshots.get(0).event;
+
+        // decode the events up to the target, tracking the standing moves
+        int count = target - base;
+        int[] ops = new int[count];
+        int[] indices = new int[count];
+        int[] depthAfter = new int[count];
+        int[] standing = new int[count];
+        int depth = snapshots.get(0).depth;
+        int[] cursor = { snapshots.get(0).logOffset };
+        for (int e = 0; e < count; e++) {
+            int key = (int) readVarint(cursor);
+            readVarint(cursor);
+            ops[e] = key & OP_MASK;
+            indices[e] = key >>> OP_BITS;
+            if (ops[e] == UNDO) {
+                depth--;
+            } else {
+                standing[depth - snapshots.get(0).depth] = e;
+                depth++;
+            }
+            depthAfter[e] = depth;
+        }
+
+        // latest snapshot whose standing moves are all still standing
+        int minDepth = depth;
+        int e = count - 1;
+        for (int s = snapshots.size() - 1; s >= 0; s--) {
+            Snapshot snapshot = snapshots.get(s);
+            int at = snapshot.event - base;
+            if (at > count) {
+                continue;
+            }
+            while (e >= at) {
+                minDepth = Math.min(minDepth, depthAfter[e]);
+                e--;
+            }
+            if (snapshot.depth <= minDepth) {
+                int first = snapshot.depth - snapshots.get(0).depth;
+                int moves = depth - snapshot.depth;
+                int[] moveOps = new int[moves];
+                int[] moveIndices = new int[moves];
+                for (int m = 0; m < moves; m++) {
+                    moveOps[m] = ops[standing[first + m]];
+                    moveIndices[m] = indices[standing[first + m]];
+                }
+                return new ReplayPlan(snapshot, s, moveOps, moveIndices);
+            }
+        }
+        throw new IllegalStateException("Journal has no usable snapshot");
+    }
+
+    /**
+     * A snapshot plus the moves to apply on top of it. The snapshot's
+     * board comes from restoreBoard.
+     */
+    static final class ReplayPlan {
+        final Snapshot snapshot;
+        final int position;     // of the snapshot in the snapshot list
+        final int[] ops;
+        final int[] indices;
+
+        ReplayPlan(Snapshot snapshot, int position, int[] ops, int[] indices) {
+            this.snapshot = snapshot;
+            this.position = position;
+            this.ops = ops;
+            this.indices = indices;
+        }
+    }
+
+    /**
+     * Walks every recorded event in order, for audits and tools.
+     * @param visitor receives the events
+     */
+    public void forEachEvent(EventVisitor visitor) {
+        int[] cursor = { 0 };
+        long time = startMillis;
+        for (int e = 0; e < events; e++) {
+            int key = (int) readVarint(cursor);
+            time += readVarint(cursor);
+            int op = key & OP_MASK;
+            visitor.visit(e, op, key >>> OP_BITS, time);
+        }
+    }
+
+    /**
+     * Writes the event log (not the snapshots or undo data) to a stream.
+     * @param out stream to write to
+     * @throws IOException if the stream fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeLong(startMillis);
+        data.writeInt(events);
+        data.writeInt(logLength);
+        data.write(log, 0, logLength);
+        data.flush();
+    }
+
+    /**
+     * Reads an event log written by writeTo. The result can be walked with
+     * forEachEvent but not replayed, since it has no snapshots.
+     * @param in stream to read from
+     * @return the journal
+     * @throws IOException if the stream fails
+     */
+    public static MoveJournal readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        MoveJournal journal = new MoveJournal(data.readLong(), 0);
+        journal.events = data.readInt();
+        journal.logLength = data.readInt();
+        journal.log = new byte[Math.max(16, journal.logLength)];
+        data.readFully(journal.log, 0, journal.logLength);
+        return journal;
+    }
+
+    private void appendEvent(int op, int index) {
+        long now = System.currentTimeMillis();
+        writeVarint(((long) index << OP_BITS) | op);
+        writeVarint(Math.max(0, now - lastMillis));
+        lastMillis = now;
+        events++;
+    }
+
+    private void writeVarint(long value) {
+        if (logLength + 10 > log.length) {
+            log = Arrays.copyOf(log, log.length * 2);
+        }
+        while ((value & ~0x7FL) != 0) {
+            log[logLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        log[logLength++] = (byte) value;
+    }
+
+    private long readVarint(int[] cursor) {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = log[cursor[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,30 @@
+import java.util.Random;
+
+
+/**
+ * A pluggable player for headless games. The batch runner keeps asking the
+ * strategy for moves until the game is over or the strategy gives up.
+ */
+public interface MoveStrategy {
+
+    /**
+     * Makes a single move (uncover or flag) on the game.
+     * @param view what the player can currently see
+     * @param game where the move is sent
+     * @param random random source for this game, seeded by the runner
+     * @return false if the strategy has no move left to make
+     */
+    boolean makeMove(BoardView view, GUIToLogic game, Random random);
+
+    /**
+     * Called before every game the strategy plays. The returned listener
+     * is attached to that game, so strategies that track the board (like
+     * the solver) see every change without rescanning the view.
+     * @param rows rows of the new game
+     * @param cols cols of the new game
+     * @return listener for the new game
+     */
+    default LogicToGUI newGame(int rows, int cols) {
+        return new CountingListener();
+    }
+}
@@ -1,45 +1,297 @@
 import javax.sound.sampled.*;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
  * This class is used only for the looping background music. It uses Java's
  * Sound and InputStream libraries.
+ * <p>The music is streamed instead of decoded into a Clip, so a track of
+ * any length only ever needs a small ring buffer of memory. Each track has
+ * a reader thread that decodes the file in chunks into its ring buffer,
+ * going back to the start of the file when it reaches the end so the loop
+ * has no gap. A single output thread takes the samples out of the ring
+ * buffers and writes them to one SourceDataLine. When a new track is
+ * started it fades in while the old one fades out.</p>
  */
 public class MusicPlayer {
 
-    private Clip clip;
+    /** The format the music is decoded to and played at. */
+    static final AudioFormat FORMAT = new AudioFormat(44100f, 16, 2, true, false);
+
+    /** Crossfade used by playLoop when no length is given. */
+    public static final int DEFAULT_CROSSFADE_MILLIS = 2000;
+
+    private static final int FRAME_BYTES = 4;
+    private static final int BLOCK_FRAMES = 1024;           // about 23ms
+    private static final int LINE_BLOCKS = 4;
+    private static final int CHUNK_BYTES = 8 * 1024;
+    private static final int RING_BYTES = 64 * 1024;        // about 370ms
+
+    private final AtomicReference<Track> requested = new AtomicReference<>();
+    private Thread output;
+    private volatile boolean stopped = false;
 
     /**
      * This method handles the playback loop for our background music. It
-     * pulls the audio as a resource via InputStream and then samples and
-     * clips the audio in order to run it in a continuous loop.
+     * starts streaming the track in a continuous loop, crossfading from the
+     * track that was playing before (or fading in if there was none).
      * @param resourcePath path to the music file
      */
     public void playLoop(String resourcePath) {
+        playLoop(resourcePath, DEFAULT_CROSSFADE_MILLIS);
+    }
+
+    /**
+     * Same as playLoop but with a chosen crossfade length.
+     * @param resourcePath path to the music file
+     * @param crossfadeMillis how long the old and new track overlap
+     */
+    public synchronized void playLoop(String resourcePath, int crossfadeMillis) {
+        if (stopped) {
+            return;
+        }
+        int fadeFrames = (int) Math.max(1,
+                FORMAT.getFrameRate() * crossfadeMillis / 1000);
+        Track track = new Track(resourcePath, fadeFrames);
+        track.start();
+        Track skipped = requested.getAndSet(track);
+        if (skipped != null) {
+            skipped.close();    // replaced before it ever played
+        }
+        if (output == null) {
+            output = new Thread(this::playTracks, "boomfield-music");
+            output.setDaemon(true);
+            output.start();
+        }
+    }
+
+    /**
+     * Stops the music and its threads for good.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        Track pending = requested.getAndSet(null);
+        if (pending != null) {
+            pending.close();
+        }
+        if (output != null) {
+            output.interrupt();
+        }
+    }
+
+    /**
+     * Output thread: mixes the current track (and the one fading out) into
+     * the line block by block. Writing to the line blocks once its buffer is
+     * full, which is what paces the loop.
+     */
+    private void playTracks() {
+        SourceDataLine line;
+        try {
+            line = AudioSystem.getSourceDataLine(FORMAT);
+            line.open(FORMAT, LINE_BLOCKS * BLOCK_FRAMES * FRAME_BYTES);
+            line.start();
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            System.err.println("Music disabled: " + e.getMessage());
+            stop();
+            return;
+        }
+
+        byte[] current = new byte[BLOCK_FRAMES * FRAME_BYTES];
+        byte[] fading = new byte[BLOCK_FRAMES * FRAME_BYTES];
+        byte[] out = new byte[BLOCK_FRAMES * FRAME_BYTES];
+        Track playing = null;
+        Track fadingOut = null;
+        int fadeAt = 0;
+        int fadeFrames = 1;
+
         try {
-            if (clip != null && clip.isRunning()) {
-                clip.stop();
+            while (!stopped) {
+                Track next = requested.getAndSet(null);
+                if (next != null) {
+                    if (fadingOut != null) {
+                        fadingOut.close();
+                    }
+                    fadingOut = playing;
+                    playing = next;
+                    fadeAt = 0;
+                    fadeFrames = next.fadeFrames;
+                }
+                if (playing == null) {
+                    Thread.sleep(10);
+                    continue;
+                }
+
+                playing.ring.read(current);
+                if (fadingOut != null) {
+                    fadingOut.ring.read(fading);
+                }
+                for (int f = 0; f < BLOCK_FRAMES; f++) {
+                    float in = fadeAt >= fadeFrames ? 1f : (float) fadeAt / fadeFrames;
+                    for (int c = 0; c < 2; c++) {
+                        int at = f * FRAME_BYTES + c * 2;
+                        float sample = sampleAt(current, at) * in;
+                        if (fadingOut != null) {
+                            sample += sampleAt(fading, at) * (1f - in);
+                        }
+                        int clipped = Math.max(Short.MIN_VALUE,
+                                Math.min(Short.MAX_VALUE, Math.round(sample)));
+                        out[at] = (byte) clipped;
+                        out[at + 1] = (byte) (clipped >> 8);
+                    }
+                    fadeAt++;
+                }
+                if (fadingOut != null && fadeAt >= fadeFrames) {
+                    fadingOut.close();
+                    fadingOut = null;
+                }
+                line.write(out, 0, out.length);
             }
+        } catch (InterruptedException e) {
+            // stopped
+        } finally {
+            if (playing != null) {
+                playing.close();
+            }
+            if (fadingOut != null) {
+                fadingOut.close();
+            }
+            line.stop();
+            line.close();
+        }
+    }
+
+    private static int sampleAt(byte[] block, int at) {
+        return (short) ((block[at] & 0xFF) | (block[at + 1] << 8));
+    }
+
+    /**
+     * Opens a music resource decoded to FORMAT.
+     */
+    private static AudioInputStream open(String resourcePath)
+            throws IOException, UnsupportedAudioFileException {
+        InputStream audioSrc = MusicPlayer.class.getResourceAsStream(resourcePath);
+        if (audioSrc == null) {
+            throw new IOException("Audio file not found: " + resourcePath);
+        }
+        // Needed because AudioSystem can't read compressed streams directly
+        AudioInputStream ais = AudioSystem.getAudioInputStream(
+                new BufferedInputStream(audioSrc));
+        if (ais.getFormat().matches(FORMAT)) {
+            return ais;
+        }
+        try {
+            return AudioSystem.getAudioInputStream(FORMAT, ais);
+        } catch (IllegalArgumentException e) {
+            ais.close();
+            throw new UnsupportedAudioFileException("Cannot convert "
+                    + resourcePath + " from " + ais.getFormat());
+        }
+    }
+
+    /**
+     * One looping track and the reader thread that keeps its ring buffer
+     * full.
+     */
+    private static final class Track implements Runnable {
+        final String resourcePath;
+        final int fadeFrames;
+        final SampleRing ring = new SampleRing(RING_BYTES);
+        private final Thread reader;
+        private volatile boolean closed = false;
 
-            InputStream audioSrc = getClass().getResourceAsStream(resourcePath);
-            if (audioSrc == null) {
-                System.err.println("Audio file not found: " + resourcePath);
-                return;
+        Track(String resourcePath, int fadeFrames) {
+            this.resourcePath = resourcePath;
+            this.fadeFrames = fadeFrames;
+            this.reader = new Thread(this, "boomfield-music-reader");
+            reader.setDaemon(true);
+        }
+
+        void start() {
+            reader.start();
+        }
+
+        void close() {
+            closed = true;
+            reader.interrupt();
+        }
+
+        @Override
+        public void run() {
+            byte[] chunk = new byte[CHUNK_BYTES];
+            try {
+                while (!closed) {
+                    boolean readAny = false;
+                    try (AudioInputStream in = open(resourcePath)) {
+                        int read;
+                        while (!closed && (read = in.readNBytes(chunk, 0,
+                                chunk.length)) > 0) {
+                            ring.write(chunk, read - read % FRAME_BYTES);
+                            readAny = true;
+                        }
+                    }
+                    if (!readAny) {
+                        return;     // empty file, nothing to loop
+                    }
+                    // end of the file, go around again straight away
+                }
+            } catch (IOException | UnsupportedAudioFileException e) {
+                System.err.println(e.getMessage());
+            } catch (InterruptedException e) {
+                // closed
             }
+        }
+    }
 
-            // Needed because AudioSystem can't read compressed streams directly
-            InputStream bufferedIn = new java.io.BufferedInputStream(audioSrc);
-            AudioInputStream ais = AudioSystem.getAudioInputStream(bufferedIn);
+    /**
+     * Fixed size ring buffer of sample bytes between a track's reader
+     * thread and the output thread. The reader waits while it is full; the
+     * output thread never waits, it plays silence for whatever the reader
+     * has not caught up with.
+     */
+    static final class SampleRing {
+        private final byte[] buffer;
+        private int readAt = 0;
+        private int size = 0;
 
-            clip = AudioSystem.getClip();
-            clip.open(ais);
-            clip.loop(Clip.LOOP_CONTINUOUSLY);
-            clip.start();
+        SampleRing(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        synchronized void write(byte[] source, int length)
+                throws InterruptedException {
+            int written = 0;
+            while (written < length) {
+                while (size == buffer.length) {
+                    wait();
+                }
+                int writeAt = (readAt + size) % buffer.length;
+                int count = Math.min(length - written,
+                        Math.min(buffer.length - size, buffer.length - writeAt));
+                System.arraycopy(source, written, buffer, writeAt, count);
+                size += count;
+                written += count;
+            }
+        }
 
-        } catch (UnsupportedAudioFileException | IOException | LineUnavailableException e) {
-            e.printStackTrace();
+        /**
+         * Fills the block from the ring, with silence after what is there.
+         * @param block block to fill
+         * @return bytes that came from the ring
+         */
+        synchronized int read(byte[] block) {
+            int count = Math.min(block.length, size);
+            int first = Math.min(count, buffer.length - readAt);
+            System.arraycopy(buffer, readAt, block, 0, first);
+            System.arraycopy(buffer, 0, block, first, count - first);
+            Arrays.fill(block, count, block.length, (byte) 0);
+            readAt = (readAt + count) % buffer.length;
+            size -= count;
+            notifyAll();
+            return count;
         }
     }
 }
@@ -0,0 +1,314 @@
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * This class hands out "no guess" boards: boards that HexSolver can clear
+ * without a single guess once its start cell is opened. Random boards only
+ * pass now and then (most of the easy ones, about a third of the medium
+ * ones and roughly one in ten thousand hard ones on 15x15), so a pool of
+ * worker threads keeps trying random seeds in the background and parks the
+ * boards that pass in a small queue per boom count. A new game then takes
+ * a board that is already checked instead of waiting for one. If the
+ * queue has run dry it gets nothing and deals a normal board, since
+ * checking boards on the caller's thread could take seconds on hard
+ * boards.
+ * <p>A board is only its seed and start cell, since the seed rebuilds the
+ * same boom layout every time (see BoomFieldLogic.generateBoard).</p>
+ */
+public class NoGuessPool {
+
+    /** Checked boards kept ready per boom count. */
+    public static final int DEFAULT_CAPACITY = 4;
+
+    private final int rows;
+    private final int cols;
+    private final Map<Integer, BlockingQueue<Board>> ready;
+    private final ExecutorService workers;
+    private final Object refill = new Object();
+    private volatile boolean closed = false;
+
+    /**
+     * A board that has been checked, ready to be played.
+     */
+    public static final class Board {
+        private final int rows;
+        private final int cols;
+        private final int booms;
+        private final long seed;
+        private final int startIndex;
+
+        Board(int rows, int cols, int booms, long seed, int startIndex) {
+            this.rows = rows;
+            this.cols = cols;
+            this.booms = booms;
+            this.seed = seed;
+            this.startIndex = startIndex;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public int getStartRow() {
+            return startIndex / cols;
+        }
+
+        public int getStartCol() {
+            return startIndex % cols;
+        }
+
+        /**
+         * Builds the game for this board with its start cell already open.
+         * @param listener information for the gui
+         * @return the new game
+         */
+        public BoomFieldLogic newGame(LogicToGUI listener) {
+            BoomFieldLogic game = new BoomFieldLogic(rows, cols, booms,
+                    listener, BoardStorage.Layout.forSize(rows, cols), seed);
+            game.uncoverSelectedCell(getStartRow(), getStartCol());
+            return game;
+        }
+    }
+
+    /**
+     * Starts the workers, which begin filling every queue right away.
+     * @param rows rows of the boards
+     * @param cols cols of the boards
+     * @param boomCounts one queue is kept for each of these boom counts
+     * @param capacity boards kept ready per boom count
+     * @param threads number of worker threads
+     */
+    public NoGuessPool(int rows, int cols, int[] boomCounts, int capacity,
+                       int threads) {
+        this.rows = rows;
+        this.cols = cols;
+        Map<Integer, BlockingQueue<Board>> queues = new LinkedHashMap<>();
+        for (int booms : boomCounts) {
+            queues.put(booms, new ArrayBlockingQueue<>(capacity));
+        }
+        this.ready = Collections.unmodifiableMap(queues);
+
+        // background work, so it gives way to the engine and the gui
+        this.workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "boomfield-noguess");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        SplittableRandom root = new SplittableRandom();
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom random = root.split();
+            workers.execute(() -> work(random));
+        }
+    }
+
+    /**
+     * Builds a pool with the default capacity and a worker for every core
+     * but one (the engine and the gui need some room too).
+     * @param rows rows of the boards
+     * @param cols cols of the boards
+     * @param boomCounts one queue is kept for each of these boom counts
+     */
+    public NoGuessPool(int rows, int cols, int[] boomCounts) {
+        this(rows, cols, boomCounts, DEFAULT_CAPACITY,
+                Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Takes a checked board if one is ready. This never waits and never
+     * checks boards itself, so it is safe to call from the engine thread
+     * or the EDT.
+     * @param booms boom count, one the pool was built for
+     * @return the board, or null if the workers have none ready yet
+     */
+    public Board take(int booms) {
+        BlockingQueue<Board> queue = ready.get(booms);
+        if (queue == null) {
+            throw new IllegalArgumentException("No queue for " + booms + " booms");
+        }
+        Board board = queue.poll();
+        if (board != null) {
+            synchronized (refill) {
+                refill.notifyAll();
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Number of checked boards ready for a boom count.
+     * @param booms boom count
+     * @return boards ready
+     */
+    public int available(int booms) {
+        BlockingQueue<Board> queue = ready.get(booms);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Stops the workers. Boards already checked can still be taken.
+     */
+    public void shutdown() {
+        closed = true;
+        workers.shutdownNow();
+    }
+
+    private void work(SplittableRandom random) {
+        try {
+            while (!closed) {
+                int booms = neediest();
+                if (booms < 0) {
+                    synchronized (refill) {
+                        while (!closed && neediest() < 0) {
+                            refill.wait();
+                        }
+                    }
+                    continue;
+                }
+                Board board = check(rows, cols, booms, random.nextLong());
+                if (board != null) {
+                    ready.get(booms).offer(board);
+                }
+            }
+        } catch (InterruptedException e) {
+            // shut down
+        }
+    }
+
+    /**
+     * The boom count whose queue has the most room, so every queue gets a
+     * turn between two candidates.
+     * @return boom count, or -1 if every queue is full
+     */
+    private int neediest() {
+        int booms = -1;
+        int mostRoom = 0;
+        for (Map.Entry<Integer, BlockingQueue<Board>> entry : ready.entrySet()) {
+            int room = entry.getValue().remainingCapacity();
+            if (room > mostRoom) {
+                mostRoom = room;
+                booms = entry.getKey();
+            }
+        }
+        return booms;
+    }
+
+    /**
+     * Checks one candidate board. The start cell is the cell with the
+     * biggest opening (the largest area a single click on a 0 uncovers),
+     * and the board passes if HexSolver can then finish the game, flags
+     * and all, using only moves it has proven.
+     * @param rows rows of the board
+     * @param cols cols of the board
+     * @param booms booms on the board
+     * @param seed seed of the board
+     * @return the board, or null if it would need a guess
+     */
+    static Board check(int rows, int cols, int booms, long seed) {
+        int size = rows * cols;
+        byte[] states = new byte[size];
+        HexSolver solver = new HexSolver(rows, cols);
+        boolean[] started = { false };
+        LogicToGUI listener = new CountingListener() {
+            @Override
+            public void updateCells(BoardDelta delta) {
+                if (!started[0]) {
+                    // the generated board, the solver must not see this
+                    for (int i = 0; i < delta.size(); i++) {
+                        states[delta.indexAt(i)] = (byte) delta.stateAt(i);
+                    }
+                } else {
+                    solver.observe(delta);
+                }
+            }
+        };
+        BoomFieldLogic game = BoomFieldLogic.headless(rows, cols, booms, seed,
+                listener);
+
+        int start = biggestOpening(states, rows, cols);
+        if (start < 0) {
+            return null;
+        }
+        started[0] = true;
+        game.uncoverSelectedCell(start / cols, start % cols);
+
+        while (!game.isGameOver()) {
+            int safe = solver.nextSafeCell();
+            if (safe >= 0) {
+                game.uncoverSelectedCell(safe / cols, safe % cols);
+                continue;
+            }
+            int boom = solver.nextUnflaggedBoom();
+            if (boom < 0) {
+                return null;    // stuck, a player would have to guess
+            }
+            game.toggleFlag(boom / cols, boom % cols);
+        }
+        return game.isWon() ? new Board(rows, cols, booms, seed, start) : null;
+    }
+
+    /**
+     * Finds the 0 cell whose flood fill uncovers the most cells.
+     * @return flat cell index, or -1 if the board has no 0 cell
+     */
+    private static int biggestOpening(byte[] states, int rows, int cols) {
+        int size = states.length;
+        int[] region = new int[size];
+        int[] neighbors = new int[6];
+        IntQueue queue = new IntQueue(64);
+        int best = -1;
+        int bestSize = 0;
+        int regionId = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (!isOpenZero(states[i]) || region[i] != 0) {
+                continue;
+            }
+            regionId++;
+            int opened = 0;
+            region[i] = regionId;
+            queue.add(i);
+            while (!queue.isEmpty()) {
+                int cell = queue.poll();
+                opened++;
+                if (!isOpenZero(states[cell])) {
+                    continue;   // numbered edge of the opening
+                }
+                int found = HexGrid.neighbors(cell, rows, cols, neighbors);
+                for (int k = 0; k < found; k++) {
+                    int next = neighbors[k];
+                    if (region[next] != regionId
+                            && (states[next] & BoardStorage.BOOM) == 0) {
+                        region[next] = regionId;
+                        queue.add(next);
+                    }
+                }
+            }
+            if (opened > bestSize) {
+                bestSize = opened;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isOpenZero(int state) {
+        return (state & BoardStorage.BOOM) == 0
+                && ((state >> BoardStorage.COUNT_SHIFT) & BoardStorage.COUNT_MASK) == 0;
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.Arrays;
+
+
+/**
+ * This is the packed board layout used for very large boards. The whole
+ * board is a single byte array with one byte per cell: the low bits hold
+ * the boom/flagged/hidden flags and the high nibble holds the neighbor
+ * count (see the bit constants in BoardStorage). A 4000x4000 board costs
+ * 16MB here instead of 16 million Cell objects, and scans over the board
+ * walk a flat array instead of chasing pointers.
+ */
+public class PackedBoard implements BoardStorage {
+
+    private static final int COUNT_BITS = COUNT_MASK << COUNT_SHIFT;
+
+    private final int rows;
+    private final int cols;
+    private final byte[] states;
+
+    /**
+     * Builds the board with every cell hidden and no booms planted.
+     * @param rows number of rows
+     * @param cols number of cols
+     */
+    public PackedBoard(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.states = new byte[BoardStorage.checkedSize(rows, cols)];
+        Arrays.fill(states, (byte) HIDDEN);
+    }
+
+    /**
+     * Builds the board from a copy of packed cell states, for example a
+     * snapshot taken with packedState.
+     * @param rows number of rows
+     * @param cols number of cols
+     * @param states packed state of every cell, copied
+     */
+    PackedBoard(int rows, int cols, byte[] states) {
+        this.rows = rows;
+        this.cols = cols;
+        if (states.length != BoardStorage.checkedSize(rows, cols)) {
+            throw new IllegalArgumentException("Expected " + rows * cols
+                    + " cell states, got " + states.length);
+        }
+        this.states = states.clone();
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public int cols() {
+        return cols;
+    }
+
+    @Override
+    public int size() {
+        return states.length;
+    }
+
+    @Override
+    public boolean hasBoom(int index) {
+        return (states[index] & BOOM) != 0;
+    }
+
+    @Override
+    public void setBoom(int index, boolean hasBoom) {
+        setBit(index, BOOM, hasBoom);
+    }
+
+    @Override
+    public boolean isFlagged(int index) {
+        return (states[index] & FLAGGED) != 0;
+    }
+
+    @Override
+    public void setFlagged(int index, boolean flagged) {
+        setBit(index, FLAGGED, flagged);
+    }
+
+    @Override
+    public boolean isHidden(int index) {
+        return (states[index] & HIDDEN) != 0;
+    }
+
+    @Override
+    public void setHidden(int index, boolean hidden) {
+        setBit(index, HIDDEN, hidden);
+    }
+
+    @Override
+    public int getNeighboringBooms(int index) {
+        int state = states[index];
+        if ((state & BOOM) != 0) {
+            return -1;
+        }
+        return (state >> COUNT_SHIFT) & COUNT_MASK;
+    }
+
+    @Override
+    public void setNeighboringBooms(int index, int count) {
+        // booms report -1 from the getter, so only real counts are stored
+        int nibble = count < 0 ? 0 : count & COUNT_MASK;
+        states[index] = (byte) ((states[index] & ~COUNT_BITS)
+                | (nibble << COUNT_SHIFT));
+    }
+
+    @Override
+    public int packedState(int index) {
+        return states[index] & 0xFF;
+    }
+
+    @Override
+    public void setPackedState(int index, int state) {
+        states[index] = (byte) state;
+    }
+
+    private void setBit(int index, int bit, boolean on) {
+        if (on) {
+            states[index] |= bit;
+        } else {
+            states[index] &= ~bit;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+
+/**
+ * This class generates very large boards on all cores. The board is split
+ * into bands of BAND_ROWS rows. The booms of each band are planted from the
+ * band's own SplittableRandom stream, and then the neighbor counts of each
+ * band are computed in a second parallel pass. The count pass reads the
+ * edge rows of the neighboring bands (the halo), which is safe because
+ * every band has finished planting by then.
+ * <p>The band size and the random streams only depend on the board size
+ * and the seed, never on the number of cores, so a seed always gives the
+ * same board. How many booms each band gets is drawn first, one band after
+ * the other, from exactly the distribution a uniform layout over the whole
+ * board would give it (a hypergeometric draw), and within a band every
+ * layout is equally likely (Floyd's sampling, like
+ * BoomFieldLogic.plantBooms). Together that makes every layout of the
+ * whole board equally likely, just like the serial path.</p>
+ */
+public final class ParallelBoardGenerator {
+
+    /** Boards with at least this many cells are generated in parallel. */
+    public static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    /** Rows per band, fixed so the board never depends on the core count. */
+    static final int BAND_ROWS = 128;
+
+    private ParallelBoardGenerator() {
+    }
+
+    /**
+     * Plants the booms and counts the neighbors of an empty board.
+     * @param board empty board
+     * @param booms number of booms to plant
+     * @param seed seed for the boom placement
+     */
+    public static void generate(BoardStorage board, int booms, long seed) {
+        int rows = board.rows();
+        int cols = board.cols();
+        int bands = (rows + BAND_ROWS - 1) / BAND_ROWS;
+
+        SplittableRandom root = new SplittableRandom(seed);
+        int[] quotas = bandQuotas(rows, cols, bands, booms, root);
+        SplittableRandom[] bandRandoms = new SplittableRandom[bands];
+        for (int b = 0; b < bands; b++) {
+            bandRandoms[b] = root.split();
+        }
+
+        GameEvents.Generation plant = new GameEvents.Generation();
+        plant.begin();
+        IntStream.range(0, bands).parallel().forEach(b ->
+                plantBand(board, bandStart(b, cols), bandRows(b, rows) * cols,
+                        quotas[b], bandRandoms[b]));
+        BoomFieldLogic.commitGeneration(plant, "plant", board, booms, true);
+
+        GameEvents.Generation count = new GameEvents.Generation();
+        count.begin();
+        IntStream.range(0, bands).parallel().forEach(b ->
+                BoomFieldLogic.countNearbyBooms(board, b * BAND_ROWS,
+                        b * BAND_ROWS + bandRows(b, rows)));
+        BoomFieldLogic.commitGeneration(count, "count", board, booms, true);
+    }
+
+    private static int bandRows(int band, int rows) {
+        return Math.min(BAND_ROWS, rows - band * BAND_ROWS);
+    }
+
+    private static int bandStart(int band, int cols) {
+        return band * BAND_ROWS * cols;
+    }
+
+    /**
+     * Splits the booms between the bands. Going band by band, each band's
+     * count is the number of the remaining booms that a uniform layout over
+     * the remaining cells would put into that band, so the counts vary
+     * exactly as much as they would on a serially planted board (a fixed
+     * proportional share would make the bands too even).
+     */
+    static int[] bandQuotas(int rows, int cols, int bands, int booms,
+                            SplittableRandom random) {
+        long cellsLeft = (long) rows * cols;
+        int boomsLeft = booms;
+        int[] quotas = new int[bands];
+        for (int b = 0; b < bands; b++) {
+            long bandCells = (long) bandRows(b, rows) * cols;
+            quotas[b] = hypergeometric(cellsLeft, boomsLeft, bandCells, random);
+            cellsLeft -= bandCells;
+            boomsLeft -= quotas[b];
+        }
+        return quotas;
+    }
+
+    /**
+     * Draws how many booms land in a group of cells when the booms are
+     * spread uniformly over all the cells (a hypergeometric draw). The
+     * probabilities are built outwards from the most likely count with the
+     * ratio between neighboring counts, stopping once they no longer
+     * register next to the total, and then one uniform number picks the
+     * count. That is a few hundred steps even for a band of 500k cells.
+     * @param cells cells left on the board
+     * @param booms booms spread over them
+     * @param drawn cells in the group
+     * @param random source of the uniform number
+     * @return booms in the group
+     */
+    static int hypergeometric(long cells, long booms, long drawn,
+                              SplittableRandom random) {
+        long low = Math.max(0, drawn - (cells - booms));
+        long high = Math.min(drawn, booms);
+        if (low == high) {
+            return (int) low;
+        }
+        long mode = (long) ((drawn + 1.0) * (booms + 1.0) / (cells + 2.0));
+        mode = Math.max(low, Math.min(high, mode));
+        long others = cells - booms - drawn;
+
+        // weights of mode, mode + 1, ... and of mode - 1, mode - 2, ...
+        double[] above = new double[64];
+        double[] below = new double[64];
+        int aboveCount = 0;
+        int belowCount = 0;
+        double total = 1.0;
+        double weight = 1.0;
+        for (long k = mode; k < high; k++) {
+            weight *= (double) (booms - k) * (drawn - k)
+                    / ((double) (k + 1) * (others + k + 1));
+            if (weight < total * 1e-17) {
+                break;
+            }
+            if (aboveCount == above.length) {
+                above = Arrays.copyOf(above, aboveCount * 2);
+            }
+            above[aboveCount++] = weight;
+            total += weight;
+        }
+        weight = 1.0;
+        for (long k = mode; k > low; k--) {
+            weight *= (double) k * (others + k)
+                    / ((double) (booms - k + 1) * (drawn - k + 1));
+            if (weight < total * 1e-17) {
+                break;
+            }
+            if (belowCount == below.length) {
+                below = Arrays.copyOf(below, belowCount * 2);
+            }
+            below[belowCount++] = weight;
+            total += weight;
+        }
+
+        double pick = random.nextDouble() * total;
+        for (int i = belowCount - 1; i >= 0; i--) {
+            pick -= below[i];
+            if (pick < 0) {
+                return (int) (mode - 1 - i);
+            }
+        }
+        pick -= 1.0;
+        if (pick < 0) {
+            return (int) mode;
+        }
+        for (int i = 0; i < aboveCount; i++) {
+            pick -= above[i];
+            if (pick < 0) {
+                return (int) (mode + 1 + i);
+            }
+        }
+        return (int) (mode + aboveCount);   // only rounding gets here
+    }
+
+    private static void plantBand(BoardStorage board, int start, int size,
+                                  int booms, SplittableRandom random) {
+        for (int j = size - booms; j < size; j++) {
+            int offset = random.nextInt(j + 1);
+            if (board.hasBoom(start + offset)) {
+                offset = j;
+            }
+            board.setBoom(start + offset, true);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+import java.util.Random;
+
+
+/**
+ * The simplest possible player: it digs a random covered, unflagged cell
+ * every move. It is mostly useful as a baseline for the batch runner.
+ */
+public class RandomMoveStrategy implements MoveStrategy {
+
+    private static final int RANDOM_TRIES = 32;
+
+    @Override
+    public boolean makeMove(BoardView view, GUIToLogic game, Random random) {
+        int rows = view.getRows();
+        int cols = view.getCols();
+        int size = rows * cols;
+
+        // random picks are quick while the board is still mostly covered
+        for (int i = 0; i < RANDOM_TRIES; i++) {
+            int index = random.nextInt(size);
+            if (isCandidate(view, index / cols, index % cols)) {
+                game.uncoverSelectedCell(index / cols, index % cols);
+                return true;
+            }
+        }
+
+        // fall back to a scan from a random start near the end of the game
+        int start = random.nextInt(size);
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            if (isCandidate(view, index / cols, index % cols)) {
+                game.uncoverSelectedCell(index / cols, index % cols);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isCandidate(BoardView view, int row, int col) {
+        return view.isHidden(row, col) && !view.isFlagged(row, col);
+    }
+}
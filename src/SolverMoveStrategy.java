@@ -0,0 +1,79 @@
+import java.util.Random;
+
+
+/**
+ * A player that only guesses when it has to. Each move it uncovers a cell
+ * HexSolver has proven safe, or flags a proven boom, and only when neither
+ * exists does it dig a random covered cell that is not a known boom. The
+ * solver follows the game through the listener from newGame, so it only
+ * re-examines the cells each move changed.
+ */
+public class SolverMoveStrategy implements MoveStrategy {
+
+    private static final int RANDOM_TRIES = 32;
+
+    private HexSolver solver;
+
+    @Override
+    public LogicToGUI newGame(int rows, int cols) {
+        HexSolver gameSolver = new HexSolver(rows, cols);
+        solver = gameSolver;
+        return new CountingListener() {
+            @Override
+            public void updateCells(BoardDelta delta) {
+                super.updateCells(delta);
+                gameSolver.observe(delta);
+            }
+        };
+    }
+
+    @Override
+    public boolean makeMove(BoardView view, GUIToLogic game, Random random) {
+        if (solver == null) {
+            throw new IllegalStateException("newGame was not called");
+        }
+        int cols = view.getCols();
+
+        int safe = solver.nextSafeCell();
+        if (safe >= 0) {
+            game.uncoverSelectedCell(safe / cols, safe % cols);
+            return true;
+        }
+        int boom = solver.nextUnflaggedBoom();
+        if (boom >= 0) {
+            game.toggleFlag(boom / cols, boom % cols);
+            return true;
+        }
+        int guess = pickGuess(view, random);
+        if (guess < 0) {
+            return false;
+        }
+        game.uncoverSelectedCell(guess / cols, guess % cols);
+        return true;
+    }
+
+    private int pickGuess(BoardView view, Random random) {
+        int cols = view.getCols();
+        int size = view.getRows() * cols;
+        for (int i = 0; i < RANDOM_TRIES; i++) {
+            int index = random.nextInt(size);
+            if (isCandidate(view, index, cols)) {
+                return index;
+            }
+        }
+        int start = random.nextInt(size);
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            if (isCandidate(view, index, cols)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isCandidate(BoardView view, int index, int cols) {
+        return view.isHidden(index / cols, index % cols)
+                && !view.isFlagged(index / cols, index % cols)
+                && !solver.isKnownBoom(index);
+    }
+}
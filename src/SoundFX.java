@@ -1,10 +1,3 @@
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
-import java.util.Objects;
-import javax.sound.sampled.FloatControl;
-
-
 /**
  * This is our handler for the various sound effects used by the game. I had
  * read that enums are better for short sounds that tend to be
@@ -16,8 +9,11 @@ import javax.sound.sampled.FloatControl;
  * order for Java to be able to use them. I did have to research and include
  * a gain adjuster because my explosion sound could not be heard very well
  * over the background music. The rest of the clips were already balanced so
- * I did not have to adjust them, although they do have the FloatControl
- * option implemented in case they need to be adjusted in the future.
+ * I did not have to adjust them, although they still have a gain in case
+ * they need to be adjusted in the future.
+ * <p>The sounds are decoded once, in parallel by AssetLoader, and played
+ * through SoundMixer, so a sound can overlap itself instead of being cut
+ * off when it is played again.</p>
  */
 public enum SoundFX {
     DIGGING("/audio/digging.wav", +0f),
@@ -27,46 +23,34 @@ public enum SoundFX {
     BOOM("/audio/explosion.wav", +6f);
 
 
-    private Clip clip;
-    private float volume;
+    private final String path;
+    private final float gain;
+    private volatile short[] samples;     // null until decoded
 
     SoundFX(String path, float volume) {
-        try {
-            var url = Objects.requireNonNull(
-                    SoundFX.class.getResource(path),
-                    "Sound resource not found: " + path
-            );
-
-            AudioInputStream audio = AudioSystem.getAudioInputStream(url);
-            clip = AudioSystem.getClip();
-            clip.open(audio);
+        this.path = path;
+        this.gain = SoundMixer.gainOf(volume);
+        // decoded in the background, the sound stays silent until then
+        AssetLoader.get().sound(path).thenAccept(s -> samples = s);
+    }
 
-            if (clip.isControlSupported(FloatControl.Type.MASTER_GAIN)) {
-                FloatControl gain = (FloatControl) clip.getControl(FloatControl.Type.MASTER_GAIN);
-                gain.setValue(volume);
-            }
-            System.out.println("Loaded sound: " + path);
-        } catch (Exception e) {
-            System.err.println("Failed to load sound: " + path);
-            e.printStackTrace();
-            clip = null;
-        }
+    /**
+     * Resource path of the sound.
+     * @return path of the wav file
+     */
+    public String getPath() {
+        return path;
     }
 
     /**
      * This is the method used to play each sound effect. It is used by both
      * the JFrame and BoardPanel when the user interacts with the difficulty
      * combo box, new game JButton, and cells. It is also used (by the JFrame
-     * class) when the game ends and the JOptionPane is displayed.
+     * class) when the game ends and the JOptionPane is displayed. It only
+     * hands the sound to the mixer's audio thread, so it returns right away.
      */
     public void play() {
-        System.out.println("Playing sound: " + this.name());
-        if (clip == null) return;
-
-        if (clip.isRunning()) {
-            clip.stop();
-        }
-        clip.setFramePosition(0);
-        clip.start();
+        DebugLog.debug(() -> "Playing sound: " + name());
+        SoundMixer.get().play(samples, gain);
     }
 }
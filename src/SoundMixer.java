@@ -0,0 +1,268 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * This class mixes the sound effects in software and plays them through a
+ * single SourceDataLine. Every effect is decoded up front into 16-bit
+ * stereo samples at one common rate (the click is 48kHz, everything else
+ * 44.1kHz), so playing one is only a matter of pointing a voice at its
+ * samples. There is a fixed number of voices, so the same effect can play
+ * on top of itself when the player digs quickly, and each voice has its
+ * own gain.
+ * <p>play only puts a trigger on a lock-free queue and wakes the audio
+ * thread, so the EDT never waits on the sound system. The audio thread
+ * takes the triggers, mixes BLOCK_FRAMES frames at a time into the line
+ * and goes to sleep once every voice has finished.</p>
+ */
+final class SoundMixer {
+
+    /** The format everything is mixed in and played at. */
+    static final AudioFormat FORMAT = new AudioFormat(44100f, 16, 2, true, false);
+
+    /** Sounds that can play at once; a new one takes over the oldest. */
+    static final int MAX_VOICES = 8;
+
+    /** Frames mixed per write, about 6ms. */
+    static final int BLOCK_FRAMES = 256;
+
+    // blocks the line buffers, which is also the most a trigger waits
+    private static final int LINE_BLOCKS = 4;
+
+    private static final SoundMixer INSTANCE = new SoundMixer();
+
+    private final ConcurrentLinkedQueue<Voice> triggers =
+            new ConcurrentLinkedQueue<>();
+
+    // voices, audio thread only
+    private final short[][] voiceSamples = new short[MAX_VOICES][];
+    private final int[] voicePosition = new int[MAX_VOICES];
+    private final float[] voiceGain = new float[MAX_VOICES];
+
+    private final int[] mixBuffer = new int[BLOCK_FRAMES * 2];
+    private final byte[] outBuffer = new byte[BLOCK_FRAMES * 4];
+
+    private volatile Thread audioThread;
+    private volatile boolean unavailable = false;
+
+    /**
+     * A sound waiting to be started.
+     */
+    private static final class Voice {
+        final short[] samples;
+        final float gain;
+
+        Voice(short[] samples, float gain) {
+            this.samples = samples;
+            this.gain = gain;
+        }
+    }
+
+    private SoundMixer() {
+    }
+
+    static SoundMixer get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts a sound on the next free voice. Safe to call from any thread
+     * and never blocks.
+     * @param samples interleaved stereo samples from loadSamples
+     * @param gain linear gain (see gainOf)
+     */
+    void play(short[] samples, float gain) {
+        if (unavailable || samples == null || samples.length == 0) {
+            return;
+        }
+        triggers.add(new Voice(samples, gain));
+        Thread thread = audioThread;
+        if (thread == null) {
+            thread = start();
+        }
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Linear gain for a change in decibels.
+     * @param decibels gain in dB, 0 for the sound as recorded
+     * @return factor the samples are multiplied by
+     */
+    static float gainOf(float decibels) {
+        return (float) Math.pow(10.0, decibels / 20.0);
+    }
+
+    private synchronized Thread start() {
+        if (audioThread == null) {
+            Thread thread = new Thread(this::run, "boomfield-audio");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            audioThread = thread;
+            thread.start();
+        }
+        return audioThread;
+    }
+
+    private void run() {
+        SourceDataLine line;
+        try {
+            line = AudioSystem.getSourceDataLine(FORMAT);
+            line.open(FORMAT, LINE_BLOCKS * outBuffer.length);
+            line.start();
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            // no sound card, the game plays on in silence
+            System.err.println("Sound effects disabled: " + e.getMessage());
+            unavailable = true;
+            triggers.clear();
+            return;
+        }
+
+        while (true) {
+            takeTriggers();
+            if (!mix(outBuffer, BLOCK_FRAMES)) {
+                LockSupport.park(this);
+                continue;
+            }
+            line.write(outBuffer, 0, outBuffer.length);
+        }
+    }
+
+    /**
+     * Moves the queued triggers onto voices, taking over the voice that has
+     * played the longest when all of them are busy.
+     */
+    private void takeTriggers() {
+        Voice trigger;
+        while ((trigger = triggers.poll()) != null) {
+            int voice = 0;
+            for (int v = 0; v < MAX_VOICES; v++) {
+                if (voiceSamples[v] == null) {
+                    voice = v;
+                    break;
+                }
+                if (voicePosition[v] > voicePosition[voice]) {
+                    voice = v;
+                }
+            }
+            voiceSamples[voice] = trigger.samples;
+            voicePosition[voice] = 0;
+            voiceGain[voice] = trigger.gain;
+        }
+    }
+
+    /**
+     * Mixes the next block of every active voice into 16-bit little-endian
+     * stereo, clipping where loud sounds add up past the sample range.
+     * @param out buffer for frames * 4 bytes
+     * @param frames frames to mix
+     * @return false if no voice was playing (out is left alone)
+     */
+    boolean mix(byte[] out, int frames) {
+        int samples = frames * 2;
+        boolean playing = false;
+        Arrays.fill(mixBuffer, 0, samples, 0);
+        for (int v = 0; v < MAX_VOICES; v++) {
+            short[] source = voiceSamples[v];
+            if (source == null) {
+                continue;
+            }
+            playing = true;
+            int position = voicePosition[v];
+            int count = Math.min(samples, source.length - position);
+            float gain = voiceGain[v];
+            for (int i = 0; i < count; i++) {
+                mixBuffer[i] += (int) (source[position + i] * gain);
+            }
+            if (position + count >= source.length) {
+                voiceSamples[v] = null;     // finished, free for the next one
+            } else {
+                voicePosition[v] = position + count;
+            }
+        }
+        if (!playing) {
+            return false;
+        }
+        for (int i = 0; i < samples; i++) {
+            int sample = Math.max(Short.MIN_VALUE,
+                    Math.min(Short.MAX_VALUE, mixBuffer[i]));
+            out[2 * i] = (byte) sample;
+            out[2 * i + 1] = (byte) (sample >> 8);
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a sound resource into interleaved 16-bit stereo samples at the
+     * mixer's rate. Mono sounds are copied to both sides and other rates
+     * are resampled with linear interpolation.
+     * @param path resource path of the sound
+     * @return the samples
+     * @throws IOException if the resource is missing or cannot be read
+     * @throws UnsupportedAudioFileException if Java cannot decode it
+     */
+    static short[] loadSamples(String path)
+            throws IOException, UnsupportedAudioFileException {
+        InputStream resource = Objects.requireNonNull(
+                SoundMixer.class.getResourceAsStream(path),
+                "Sound resource not found: " + path);
+        try (AudioInputStream source = AudioSystem.getAudioInputStream(
+                new BufferedInputStream(resource))) {
+            AudioFormat from = source.getFormat();
+            int channels = from.getChannels();
+            AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,
+                    from.getSampleRate(), 16, channels, channels * 2,
+                    from.getSampleRate(), false);
+            byte[] bytes;
+            try (AudioInputStream decoded =
+                         AudioSystem.getAudioInputStream(pcm, source)) {
+                bytes = decoded.readAllBytes();
+            }
+            return toStereo(bytes, channels, from.getSampleRate());
+        }
+    }
+
+    private static short[] toStereo(byte[] bytes, int channels, float rate) {
+        int frames = bytes.length / (2 * channels);
+        if (frames == 0) {
+            return new short[0];
+        }
+        int right = channels > 1 ? 1 : 0;
+        double step = rate / FORMAT.getSampleRate();
+        int outFrames = (int) ((frames - 1) / step) + 1;
+        short[] out = new short[outFrames * 2];
+        for (int f = 0; f < outFrames; f++) {
+            double at = f * step;
+            int frame = (int) at;
+            int next = Math.min(frame + 1, frames - 1);
+            double weight = at - frame;
+            out[2 * f] = interpolate(bytes, channels, frame, next, 0, weight);
+            out[2 * f + 1] = interpolate(bytes, channels, frame, next, right,
+                    weight);
+        }
+        return out;
+    }
+
+    private static short interpolate(byte[] bytes, int channels, int frame,
+                                     int next, int channel, double weight) {
+        int a = sampleAt(bytes, channels, frame, channel);
+        int b = sampleAt(bytes, channels, next, channel);
+        return (short) Math.round(a + (b - a) * weight);
+    }
+
+    private static int sampleAt(byte[] bytes, int channels, int frame,
+                                int channel) {
+        int offset = (frame * channels + channel) * 2;
+        return (short) ((bytes[offset] & 0xFF) | (bytes[offset + 1] << 8));
+    }
+}
@@ -0,0 +1,150 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+
+/**
+ * This class is the sprite cache for the board's tiles. Every tile state
+ * (hidden, flagged, mine, and uncovered with 0-6 nearby booms) is rendered
+ * once: the JPG icon is scaled, masked to the hex shape through its alpha
+ * channel, outlined, and the number glyph is drawn on top. Painting a cell
+ * is then a single unscaled drawImage with no clipping or font work.
+ * <p>The sprites are built in an image compatible with the screen so Java2D
+ * can keep them accelerated.</p>
+ */
+public class TileSprites {
+
+    public static final int HIDDEN = 0;
+    public static final int FLAGGED = 1;
+    public static final int MINE = 2;
+    /** Uncovered tiles use UNCOVERED + neighboring booms (0-6). */
+    public static final int UNCOVERED = 3;
+
+    private static final Color PLACEHOLDER_HIDDEN = new Color(70, 70, 70);
+    private static final Color PLACEHOLDER_UNCOVERED = new Color(170, 170, 170);
+
+    private final BufferedImage[] sprites = new BufferedImage[UNCOVERED + 7];
+    private final int anchorX;
+    private final int anchorY;
+
+    /**
+     * Renders every sprite for the given hex size. Any icon may be null (for
+     * example while it is still loading), in which case the tile falls back
+     * to a flat placeholder color.
+     * @param hexSize distance from a hex's center to its corners
+     * @param font font used for the number glyphs
+     * @param gc graphics configuration of the screen, or null if headless
+     * @param iconHidden icon for hidden tiles
+     * @param iconFlagged icon for flagged tiles
+     * @param iconMine icon for uncovered mines
+     * @param iconUncovered icon for uncovered safe tiles
+     */
+    public TileSprites(int hexSize, Font font, GraphicsConfiguration gc,
+                       Image iconHidden, Image iconFlagged,
+                       Image iconMine, Image iconUncovered) {
+
+        anchorX = (int) Math.ceil(Math.sqrt(3.0) * hexSize / 2.0) + 1;
+        anchorY = hexSize + 1;
+        int width = anchorX * 2 + 1;
+        int height = anchorY * 2 + 1;
+
+        Polygon hex = new Polygon();
+        for (int i = 0; i < 6; i++) {
+            double angleRad = Math.toRadians(60 * i - 30);
+            hex.addPoint((int) Math.round(anchorX + hexSize * Math.cos(angleRad)),
+                    (int) Math.round(anchorY + hexSize * Math.sin(angleRad)));
+        }
+
+        Font glyphFont = font.deriveFont(Font.BOLD, 14f);
+
+        sprites[HIDDEN] = render(gc, width, height, hex, iconHidden,
+                PLACEHOLDER_HIDDEN, null, null);
+        sprites[FLAGGED] = render(gc, width, height, hex,
+                iconFlagged != null ? iconFlagged : iconHidden,
+                PLACEHOLDER_HIDDEN, null, null);
+        sprites[MINE] = render(gc, width, height, hex, iconMine,
+                PLACEHOLDER_UNCOVERED, null, null);
+        sprites[UNCOVERED] = render(gc, width, height, hex, iconUncovered,
+                PLACEHOLDER_UNCOVERED, null, null);
+        for (int n = 1; n <= 6; n++) {
+            sprites[UNCOVERED + n] = render(gc, width, height, hex,
+                    iconUncovered, PLACEHOLDER_UNCOVERED,
+                    Integer.toString(n), glyphFont);
+        }
+    }
+
+    /**
+     * Picks the sprite for a cell state.
+     * @param hidden if the cell is still covered
+     * @param flagged if the cell has been flagged
+     * @param hasBoom if the cell hides a mine
+     * @param neighboringBooms mines touching the cell
+     * @return sprite number to pass to draw
+     */
+    public static int spriteFor(boolean hidden, boolean flagged,
+                                boolean hasBoom, int neighboringBooms) {
+        if (hidden) {
+            return flagged ? FLAGGED : HIDDEN;
+        }
+        if (hasBoom) {
+            return MINE;
+        }
+        return UNCOVERED + Math.max(0, Math.min(6, neighboringBooms));
+    }
+
+    /**
+     * Blits a sprite centered on a hex center.
+     * @param g graphics to draw into
+     * @param sprite sprite number from spriteFor
+     * @param centerX rounded x of the hex center
+     * @param centerY rounded y of the hex center
+     */
+    public void draw(Graphics g, int sprite, int centerX, int centerY) {
+        g.drawImage(sprites[sprite], centerX - anchorX, centerY - anchorY, null);
+    }
+
+    private static BufferedImage render(GraphicsConfiguration gc,
+                                        int width, int height, Polygon hex,
+                                        Image icon, Color placeholder,
+                                        String glyph, Font glyphFont) {
+        BufferedImage img = (gc != null)
+                ? gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT)
+                : new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+
+        Graphics2D g2 = img.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+        if (icon != null) {
+            // hex-shaped alpha mask first, then the icon only where it is set
+            g2.setColor(Color.WHITE);
+            g2.fillPolygon(hex);
+            g2.setComposite(AlphaComposite.SrcIn);
+
+            Rectangle bounds = hex.getBounds();
+            int size = Math.max(0, Math.min(bounds.width, bounds.height));
+            int drawX = bounds.x + (bounds.width - size) / 2;
+            int drawY = bounds.y + (bounds.height - size) / 2;
+            g2.drawImage(icon, drawX, drawY, size, size, null);
+            g2.setComposite(AlphaComposite.SrcOver);
+        } else {
+            g2.setColor(placeholder);
+            g2.fillPolygon(hex);
+        }
+
+        g2.setColor(Color.BLACK);
+        g2.drawPolygon(hex);
+
+        if (glyph != null) {
+            g2.setFont(glyphFont);
+            FontMetrics fm = g2.getFontMetrics();
+            Rectangle bounds = hex.getBounds();
+            int x = bounds.x + (bounds.width - fm.stringWidth(glyph)) / 2;
+            int y = bounds.y + (bounds.height + fm.getAscent()) / 2 - 2;
+            g2.drawString(glyph, x, y);
+        }
+        g2.dispose();
+        return img;
+    }
+}